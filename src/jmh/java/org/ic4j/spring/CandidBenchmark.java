@@ -0,0 +1,87 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.spring;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.ic4j.candid.parser.IDLArgs;
+import org.ic4j.candid.parser.IDLValue;
+import org.ic4j.candid.types.Type;
+import org.ic4j.internetidentity.PrepareDelegationResponse;
+import org.ic4j.spring.test.LoanOfferRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Candid encoding and decoding cost of the payloads used on the service call
+ * path, without any network.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CandidBenchmark {
+	@Param({ "10", "100", "1000" })
+	int size;
+
+	LoanOfferRequest[] requests;
+
+	byte[] encodedRequests;
+
+	byte[] encodedPrepareDelegation;
+
+	@Setup
+	public void setup() {
+		this.requests = StubLoanProviderService.requests(this.size);
+		this.encodedRequests = StubLoanProviderService.encode(this.requests);
+
+		byte[] userKey = new byte[62];
+		Arrays.fill(userKey, (byte) 7);
+
+		this.encodedPrepareDelegation = IDLArgs
+				.create(Arrays.asList(IDLValue.create(userKey), IDLValue.create(1700000000000000000L, Type.NAT64)))
+				.toBytes();
+	}
+
+	@Benchmark
+	public byte[] encodeRequests() {
+		return StubLoanProviderService.encode(this.requests);
+	}
+
+	@Benchmark
+	public LoanOfferRequest[] decodeRequests() {
+		return IDLArgs.fromBytes(this.encodedRequests).getArgs().get(0).getValue(CanisterMethod.POJO_DESERIALIZER,
+				LoanOfferRequest[].class);
+	}
+
+	@Benchmark
+	public PrepareDelegationResponse decodePrepareDelegation() {
+		return InternetIdentityService.toPrepareDelegationResponse(IDLArgs.fromBytes(this.encodedPrepareDelegation));
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.spring;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+import org.ic4j.spring.test.LoanOffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Service.call against the stub replica: cold (service init plus first call),
+ * warm, and concurrent throughput on a shared service.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ServiceCallBenchmark {
+	@Param({ "10", "100" })
+	int size;
+
+	StubReplica replica;
+
+	String location;
+
+	AgentRegistry agentRegistry;
+
+	StubLoanProviderService service;
+
+	/*
+	 * Fresh registry per cold call, closed after it so the transports and
+	 * connection pools of previous invocations don't accumulate. The process
+	 * wide identity, root key and IDL file caches are cleared too, otherwise
+	 * only the first call would be cold. coldCall runs as SingleShotTime, so
+	 * each iteration is exactly one call.
+	 */
+	@State(Scope.Thread)
+	public static class ColdRegistry {
+		AgentRegistry agentRegistry;
+
+		@Setup(Level.Iteration)
+		public void setup() {
+			// root keys are cleared with the identities
+			IdentityCache.clear();
+			IDLFileCache.clear();
+
+			this.agentRegistry = new AgentRegistry(null);
+		}
+
+		@TearDown(Level.Iteration)
+		public void tearDown() {
+			this.agentRegistry.destroy();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, URISyntaxException {
+		this.replica = StubLoanProviderService.createReplica(this.size);
+		this.location = this.replica.start();
+
+		this.agentRegistry = new AgentRegistry(null);
+
+		this.service = new StubLoanProviderService(this.agentRegistry);
+		this.service.init(this.location);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.agentRegistry.destroy();
+		this.replica.stop();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 5)
+	@Measurement(iterations = 50)
+	public String coldCall(ColdRegistry coldRegistry) throws IOException, URISyntaxException {
+		StubLoanProviderService service = new StubLoanProviderService(coldRegistry.agentRegistry);
+		service.init(this.location);
+
+		return service.getName();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public String warmCall() {
+		return this.service.getName();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public LoanOffer[] warmCallLargeResponse() {
+		return this.service.getOffers();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@Threads(16)
+	public LoanOffer[] concurrentThroughput() {
+		return this.service.getOffers();
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.spring;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import org.ic4j.agent.identity.AnonymousIdentity;
+import org.ic4j.candid.parser.IDLArgs;
+import org.ic4j.candid.parser.IDLValue;
+import org.ic4j.spring.test.LoanOffer;
+import org.ic4j.spring.test.LoanOfferRequest;
+import org.ic4j.spring.test.LoanProvider;
+import org.springframework.core.io.DefaultResourceLoader;
+
+/*
+ * LoanProvider service bound to a stub replica
+ */
+final class StubLoanProviderService extends Service {
+	static final String CANISTER_ID = "ielud-liaaa-aaaad-aanuq-cai";
+
+	StubLoanProviderService(AgentRegistry agentRegistry) {
+		super(new DefaultResourceLoader());
+
+		this.agentRegistry = agentRegistry;
+	}
+
+	void init(String location) throws URISyntaxException, IOException {
+		super.init(LoanProvider.class, location, CANISTER_ID, CANISTER_ID, new AnonymousIdentity());
+	}
+
+	String getName() {
+		return super.call("getName");
+	}
+
+	CompletableFuture<String> submitGetName() {
+		return super.submit("getName");
+	}
+
+	LoanOffer[] getOffers() {
+		return super.call("getOffers");
+	}
+
+	static StubReplica createReplica(int size) throws IOException {
+		StubReplica replica = new StubReplica();
+
+		replica.reply("getName", encode("United Loan"));
+		replica.reply("getOffers", encode(offers(size)));
+		replica.reply("getRequests", encode(requests(size)));
+
+		return replica;
+	}
+
+	static byte[] encode(Object value) {
+		return IDLArgs.create(Collections.singletonList(IDLValue.create(value, CanisterMethod.POJO_SERIALIZER)))
+				.toBytes();
+	}
+
+	static LoanOffer[] offers(int size) {
+		LoanOffer[] offers = new LoanOffer[size];
+
+		for (int i = 0; i < size; i++) {
+			offers[i] = new LoanOffer();
+			offers[i].applicationId = BigInteger.valueOf(i);
+			offers[i].apr = 3.5 + i % 10;
+			offers[i].created = 1700000000000L + i;
+		}
+
+		return offers;
+	}
+
+	static LoanOfferRequest[] requests(int size) {
+		LoanOfferRequest[] requests = new LoanOfferRequest[size];
+
+		for (int i = 0; i < size; i++) {
+			requests[i] = new LoanOfferRequest();
+			requests[i].applicationId = BigInteger.valueOf(i);
+			requests[i].amount = 1000.0 + i;
+			requests[i].term = (short) 12;
+			requests[i].rating = (short) 700;
+			requests[i].zipcode = "12345";
+			requests[i].created = 1700000000000L + i;
+		}
+
+		return requests;
+	}
+}
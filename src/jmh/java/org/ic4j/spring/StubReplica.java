@@ -0,0 +1,138 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.spring;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * Minimal in-process replica answering status and query requests with canned
+ * Candid replies per method, so benchmarks run without dfx.
+ */
+final class StubReplica {
+	static final ObjectMapper CBOR_MAPPER = new ObjectMapper(new CBORFactory());
+
+	final HttpServer server;
+
+	final Map<String, byte[]> replies = new ConcurrentHashMap<String, byte[]>();
+
+	// replies are held back without blocking a server thread, simulates a slow replica
+	final ScheduledExecutorService delayer = Executors.newSingleThreadScheduledExecutor();
+
+	volatile long replyDelay;
+
+	StubReplica() throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.server.setExecutor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2));
+
+		this.server.createContext("/api/v2/status", exchange -> {
+			Map<String, Object> status = new HashMap<String, Object>();
+			status.put("ic_api_version", "0.18.0");
+			status.put("root_key", new byte[133]);
+
+			this.send(exchange, 200, CBOR_MAPPER.writeValueAsBytes(status));
+		});
+
+		this.server.createContext("/api/v2/canister/", exchange -> {
+			JsonNode envelope = CBOR_MAPPER.readTree(read(exchange.getRequestBody()));
+
+			String methodName = envelope.get("content").get("method_name").asText();
+
+			byte[] arg = this.replies.get(methodName);
+
+			if (arg == null || !exchange.getRequestURI().getPath().endsWith("/query")) {
+				this.send(exchange, 404, new byte[0]);
+				return;
+			}
+
+			Map<String, Object> reply = new HashMap<String, Object>();
+			reply.put("arg", arg);
+
+			Map<String, Object> response = new HashMap<String, Object>();
+			response.put("status", "replied");
+			response.put("reply", reply);
+
+			byte[] body = CBOR_MAPPER.writeValueAsBytes(response);
+
+			if (this.replyDelay > 0)
+				this.delayer.schedule(() -> {
+					this.send(exchange, 200, body);
+					return null;
+				}, this.replyDelay, TimeUnit.MILLISECONDS);
+			else
+				this.send(exchange, 200, body);
+		});
+	}
+
+	void reply(String methodName, byte[] arg) {
+		this.replies.put(methodName, arg);
+	}
+
+	void setReplyDelay(long replyDelay) {
+		this.replyDelay = replyDelay;
+	}
+
+	String start() {
+		this.server.start();
+
+		return "http://127.0.0.1:" + this.server.getAddress().getPort() + "/";
+	}
+
+	void stop() {
+		this.server.stop(0);
+		this.delayer.shutdownNow();
+	}
+
+	void send(HttpExchange exchange, int code, byte[] body) throws IOException {
+		exchange.getResponseHeaders().add("Content-Type", "application/cbor");
+		exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+
+		if (body.length > 0) {
+			try (OutputStream outputStream = exchange.getResponseBody()) {
+				outputStream.write(body);
+			}
+		}
+
+		exchange.close();
+	}
+
+	static byte[] read(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int length;
+
+		while ((length = inputStream.read(buffer)) != -1)
+			outputStream.write(buffer, 0, length);
+
+		return outputStream.toByteArray();
+	}
+}
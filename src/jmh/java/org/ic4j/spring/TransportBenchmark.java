@@ -0,0 +1,91 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+import org.ic4j.spring.test.LoanOffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Apache versus Java 11 HttpClient transport for warm query calls, single
+ * caller latency and concurrent throughput. The stub replica speaks plain
+ * HTTP/1.1, so this compares client overhead and pooling; HTTP/2 multiplexing
+ * only comes into play against a TLS boundary node.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TransportBenchmark {
+	@Param({ "APACHE", "JAVA11" })
+	TransportType transport;
+
+	@Param({ "100" })
+	int size;
+
+	StubReplica replica;
+
+	StubLoanProviderService service;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, URISyntaxException {
+		this.replica = StubLoanProviderService.createReplica(this.size);
+
+		String location = this.replica.start();
+
+		AgentRegistry agentRegistry = new AgentRegistry(null);
+		agentRegistry.transportType = this.transport;
+
+		this.service = new StubLoanProviderService(agentRegistry);
+		this.service.init(location);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.replica.stop();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public String latency() {
+		return this.service.getName();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@Threads(64)
+	public LoanOffer[] concurrentThroughput() {
+		return this.service.getOffers();
+	}
+}
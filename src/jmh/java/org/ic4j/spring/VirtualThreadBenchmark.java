@@ -0,0 +1,106 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Many concurrent blocking calls submitted through Service.submit, on a fixed
+ * platform pool sized like the usual @Async default versus a virtual thread per
+ * call. The stub replica holds every reply back to stand in for the seconds an
+ * update call spends polling for certification. Virtual runs need JDK 21+.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class VirtualThreadBenchmark {
+	static final int PLATFORM_POOL_SIZE = 8;
+
+	@Param({ "platform", "virtual" })
+	String executor;
+
+	@Param({ "10000" })
+	int calls;
+
+	@Param({ "50" })
+	long replyDelay;
+
+	StubReplica replica;
+
+	ExecutorService executorService;
+
+	StubLoanProviderService service;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, URISyntaxException {
+		this.replica = StubLoanProviderService.createReplica(10);
+		this.replica.setReplyDelay(this.replyDelay);
+
+		String location = this.replica.start();
+
+		if ("virtual".equals(this.executor))
+			this.executorService = VirtualThreads.newExecutor();
+		else
+			this.executorService = Executors.newFixedThreadPool(PLATFORM_POOL_SIZE);
+
+		// the connection pool must not be the bottleneck being measured
+		AgentRegistry agentRegistry = new AgentRegistry(null);
+		agentRegistry.maxTotal = this.calls;
+		agentRegistry.maxPerRoute = this.calls;
+
+		this.service = new StubLoanProviderService(agentRegistry);
+		this.service.setTaskExecutor(this.executorService);
+		this.service.init(location);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.executorService.shutdownNow();
+		this.replica.stop();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void concurrentCalls() {
+		CompletableFuture<?>[] responses = new CompletableFuture<?>[this.calls];
+
+		for (int i = 0; i < this.calls; i++)
+			responses[i] = this.service.submitGetName();
+
+		CompletableFuture.allOf(responses).join();
+	}
+}
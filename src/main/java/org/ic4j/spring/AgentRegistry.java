@@ -0,0 +1,361 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.spring;
+
+import java.lang.reflect.InvocationTargetException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ic4j.agent.Agent;
+import org.ic4j.agent.AgentBuilder;
+import org.ic4j.agent.ReplicaTransport;
+import org.ic4j.agent.http.ReplicaApacheHttpTransport;
+import org.ic4j.agent.identity.AnonymousIdentity;
+import org.ic4j.agent.identity.Identity;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/*
+ * Hands out one shared Agent per (location, identity) so all canister services
+ * talking to the same replica reuse a single HTTP connection pool and fetch the
+ * root key only once. The transports are closed when the registry is cleared or
+ * the Spring context shuts down, those of the default registry when the JVM
+ * exits or closeDefault is called.
+ */
+@Component
+public final class AgentRegistry implements DisposableBean {
+	static final int DEFAULT_MAX_TOTAL = 200;
+	static final int DEFAULT_MAX_PER_ROUTE = 50;
+	static final int DEFAULT_CONNECTION_TIME_TO_LIVE = 60;
+	static final int DEFAULT_TIMEOUT = 120;
+	static final long DEFAULT_HEALTH_CHECK_INTERVAL = 10000;
+
+	static final String JAVA_HTTP_TRANSPORT_CLASS = "org.ic4j.agent.http.ReplicaJavaHttpTransport";
+
+	static final Log LOG = LogFactory.getLog(AgentRegistry.class);
+
+	static AgentRegistry defaultRegistry;
+
+	static Thread defaultShutdownHook;
+
+	// root keys are shared by all registries, one fetch per replica location
+	static final ConcurrentMap<String, byte[]> ROOT_KEYS = new ConcurrentHashMap<String, byte[]>();
+
+	// agents being built are visible as pending futures so concurrent callers for the same key wait for them
+	final ConcurrentMap<String, CompletableFuture<Agent>> agents = new ConcurrentHashMap<String, CompletableFuture<Agent>>();
+
+	final List<RoutingReplicaTransport> routingTransports = new CopyOnWriteArrayList<RoutingReplicaTransport>();
+
+	// every transport created for an agent, closed by clear
+	final List<ReplicaTransport> transports = new CopyOnWriteArrayList<ReplicaTransport>();
+
+	int maxTotal = DEFAULT_MAX_TOTAL;
+
+	int maxPerRoute = DEFAULT_MAX_PER_ROUTE;
+
+	// seconds a pooled connection is kept alive, idle connections are evicted after that
+	int connectionTimeToLive = DEFAULT_CONNECTION_TIME_TO_LIVE;
+
+	int timeout = DEFAULT_TIMEOUT;
+
+	TransportType transportType = TransportType.APACHE;
+
+	boolean hedgeQueries = false;
+
+	// milliseconds between status checks of routed endpoints, 0 disables them
+	long healthCheckInterval = DEFAULT_HEALTH_CHECK_INTERVAL;
+
+	AgentFactory agentFactory = this::createAgent;
+
+	public AgentRegistry(Environment env) {
+		if (env != null) {
+			this.transportType = TransportType.parse(env.getProperty("ic.transport.type"), TransportType.APACHE);
+			this.hedgeQueries = env.getProperty("ic.routing.hedgeQueries", Boolean.class, false);
+			this.healthCheckInterval = env.getProperty("ic.routing.healthCheckInterval", Long.class,
+					DEFAULT_HEALTH_CHECK_INTERVAL);
+			this.maxTotal = env.getProperty("ic.transport.maxTotal", Integer.class, DEFAULT_MAX_TOTAL);
+			this.maxPerRoute = env.getProperty("ic.transport.maxPerRoute", Integer.class, DEFAULT_MAX_PER_ROUTE);
+			this.connectionTimeToLive = env.getProperty("ic.transport.connectionTimeToLive", Integer.class,
+					DEFAULT_CONNECTION_TIME_TO_LIVE);
+			this.timeout = env.getProperty("ic.transport.timeout", Integer.class, DEFAULT_TIMEOUT);
+		}
+	}
+
+	/*
+	 * Registry used by services when no AgentRegistry bean is available
+	 */
+	public static AgentRegistry getDefault() {
+		return getDefault(null);
+	}
+
+	/*
+	 * The first call creates the default registry, configured from env
+	 */
+	public static synchronized AgentRegistry getDefault(Environment env) {
+		if (defaultRegistry == null) {
+			AgentRegistry registry = new AgentRegistry(env);
+
+			// no context owns the default registry, close its transports when the JVM exits
+			defaultShutdownHook = new Thread(registry::destroy, "ic4j-agent-registry-shutdown");
+			Runtime.getRuntime().addShutdownHook(defaultShutdownHook);
+
+			defaultRegistry = registry;
+		}
+
+		return defaultRegistry;
+	}
+
+	/*
+	 * Closes the default registry, the next getDefault creates a new one
+	 */
+	public static synchronized void closeDefault() {
+		if (defaultRegistry == null)
+			return;
+
+		try {
+			Runtime.getRuntime().removeShutdownHook(defaultShutdownHook);
+		} catch (IllegalStateException e) {
+			// the JVM is already shutting down, the hook closes the registry
+			return;
+		}
+
+		defaultRegistry.destroy();
+
+		defaultRegistry = null;
+		defaultShutdownHook = null;
+	}
+
+	public Agent getAgent(String location, Identity identity, boolean fetchRootKey) throws URISyntaxException {
+		return this.getAgent(location, identity, fetchRootKey, false);
+	}
+
+	public Agent getAgent(String location, Identity identity, boolean fetchRootKey, boolean verify)
+			throws URISyntaxException {
+		return this.getAgent(location, identity, fetchRootKey, verify, null);
+	}
+
+	/*
+	 * Transport type null selects the registry default, set with ic.transport.type
+	 */
+	public Agent getAgent(String location, Identity identity, boolean fetchRootKey, boolean verify,
+			TransportType transportType) throws URISyntaxException {
+		if (location == null)
+			throw new IllegalArgumentException("Location is required");
+
+		if (identity == null)
+			identity = new AnonymousIdentity();
+
+		if (transportType == null)
+			transportType = this.transportType;
+
+		String key = location + '|' + identity.sender().toString() + '|' + fetchRootKey + '|' + verify + '|'
+				+ transportType;
+
+		CompletableFuture<Agent> agent = this.agents.get(key);
+
+		if (agent == null) {
+			CompletableFuture<Agent> created = new CompletableFuture<Agent>();
+
+			agent = this.agents.putIfAbsent(key, created);
+
+			// built without holding a lock, fetching the root key doesn't block callers for other keys
+			if (agent == null) {
+				try {
+					created.complete(this.agentFactory.create(location, identity, fetchRootKey, verify, transportType));
+				} catch (URISyntaxException | RuntimeException | Error e) {
+					// let the next caller try again
+					this.agents.remove(key, created);
+
+					created.completeExceptionally(e);
+
+					throw e;
+				}
+
+				agent = created;
+			}
+		}
+
+		try {
+			return agent.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof URISyntaxException)
+				throw (URISyntaxException) e.getCause();
+
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+
+			throw e;
+		}
+	}
+
+	Agent createAgent(String location, Identity identity, boolean fetchRootKey, boolean verify,
+			TransportType transportType) throws URISyntaxException {
+		ReplicaTransport transport = this.createTransport(location, transportType);
+
+		Agent agent = new AgentBuilder().transport(transport).identity(identity).build();
+
+		if (fetchRootKey)
+			setRootKey(agent, location);
+
+		agent.setVerify(verify);
+
+		return agent;
+	}
+
+	/*
+	 * A comma separated location lists several boundary nodes, requests are routed
+	 * between them by RoutingReplicaTransport
+	 */
+	ReplicaTransport createTransport(String location, TransportType transportType) throws URISyntaxException {
+		if (location.indexOf(',') < 0)
+			return this.createEndpointTransport(location, transportType);
+
+		List<String> urls = new ArrayList<String>();
+		List<ReplicaTransport> transports = new ArrayList<ReplicaTransport>();
+
+		for (String url : location.split(",")) {
+			url = url.trim();
+
+			if (url.isEmpty())
+				continue;
+
+			urls.add(url);
+			transports.add(this.createEndpointTransport(url, transportType));
+		}
+
+		RoutingReplicaTransport routing = new RoutingReplicaTransport(urls, transports, this.hedgeQueries);
+
+		if (this.healthCheckInterval > 0)
+			routing.startHealthCheck(this.healthCheckInterval);
+
+		this.routingTransports.add(routing);
+
+		return routing;
+	}
+
+	ReplicaTransport createEndpointTransport(String location, TransportType transportType) throws URISyntaxException {
+		switch (transportType) {
+		case JAVA11:
+			return this.register(createJavaHttpTransport(location));
+		default:
+			return this.register(ReplicaApacheHttpTransport.create(location, this.maxTotal, this.maxPerRoute,
+					this.connectionTimeToLive, this.timeout));
+		}
+	}
+
+	ReplicaTransport register(ReplicaTransport transport) {
+		this.transports.add(transport);
+
+		return transport;
+	}
+
+	/*
+	 * The Java 11 transport is compiled for Java 11 while this library targets
+	 * Java 8, so it is only referenced reflectively
+	 */
+	static ReplicaTransport createJavaHttpTransport(String location) throws URISyntaxException {
+		try {
+			Class<?> transportClass = Class.forName(JAVA_HTTP_TRANSPORT_CLASS);
+
+			return (ReplicaTransport) transportClass.getMethod("create", String.class).invoke(null, location);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof URISyntaxException)
+				throw (URISyntaxException) e.getCause();
+
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+
+			throw new IllegalStateException("Unable to create Java 11 HTTP transport", e.getCause());
+		} catch (ReflectiveOperationException | LinkageError e) {
+			throw new IllegalStateException(
+					"Java 11 HTTP transport requires ic4j-java11transport and Java 11 or later", e);
+		}
+	}
+
+	static void setRootKey(Agent agent, String location) {
+		byte[] rootKey = ROOT_KEYS.get(location);
+
+		if (rootKey == null) {
+			agent.fetchRootKey();
+
+			ROOT_KEYS.putIfAbsent(location, agent.getRootKey());
+		} else
+			agent.setRootKey(rootKey);
+	}
+
+	public int size() {
+		return this.agents.size();
+	}
+
+	/*
+	 * Drops all agents and closes their transports, agents handed out before
+	 * can't be used afterwards
+	 */
+	public void clear() {
+		this.agents.clear();
+
+		for (RoutingReplicaTransport transport : this.routingTransports)
+			transport.stopHealthCheck();
+
+		this.routingTransports.clear();
+
+		for (ReplicaTransport transport : this.transports) {
+			this.transports.remove(transport);
+
+			close(transport);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		this.clear();
+	}
+
+	/*
+	 * Builds the agent of one registry key, createAgent unless replaced
+	 */
+	@FunctionalInterface
+	interface AgentFactory {
+		Agent create(String location, Identity identity, boolean fetchRootKey, boolean verify,
+				TransportType transportType) throws URISyntaxException;
+	}
+
+	/*
+	 * Transports hold an HTTP client, not all of them implement AutoCloseable
+	 */
+	static void close(ReplicaTransport transport) {
+		try {
+			if (transport instanceof AutoCloseable)
+				((AutoCloseable) transport).close();
+			else
+				transport.getClass().getMethod("close").invoke(transport);
+		} catch (NoSuchMethodException e) {
+			// nothing to release
+		} catch (Exception e) {
+			LOG.warn("Unable to close replica transport", e);
+		}
+	}
+}
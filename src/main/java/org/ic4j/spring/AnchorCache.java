@@ -0,0 +1,177 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.ic4j.internetidentity.AnchorCredentials;
+import org.ic4j.internetidentity.DeviceData;
+
+/*
+ * TTL bounded LRU cache of device lookups and anchor credentials, one small
+ * entry per anchor. Entries are dropped when the owning service changes the
+ * anchor's devices. A lookup that was in flight while an anchor changed is not
+ * stored, so a stale reply cannot repopulate the cache.
+ */
+public final class AnchorCache {
+	final long ttl;
+
+	final LinkedHashMap<Long, Entry> entries;
+
+	// bumped on every invalidation, guards results of lookups started before it
+	final AtomicLong generation = new AtomicLong();
+
+	final AtomicLong hits = new AtomicLong();
+
+	final AtomicLong misses = new AtomicLong();
+
+	final Clock clock;
+
+	public AnchorCache(long ttl, int maxSize) {
+		this(ttl, maxSize, Clock.systemUTC());
+	}
+
+	public AnchorCache(long ttl, int maxSize, Clock clock) {
+		if (ttl <= 0)
+			throw new IllegalArgumentException("TTL must be positive");
+
+		if (maxSize <= 0)
+			throw new IllegalArgumentException("Maximum size must be positive");
+
+		this.ttl = ttl;
+		this.clock = clock;
+		this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	public DeviceData[] getDevices(Long userNumber, Supplier<DeviceData[]> lookup) {
+		long generation = this.generation.get();
+
+		synchronized (this) {
+			Entry entry = this.getEntry(userNumber);
+
+			if (entry != null && entry.devices != null && entry.devicesExpireAt > this.clock.millis()) {
+				this.hits.incrementAndGet();
+				return entry.devices;
+			}
+		}
+
+		this.misses.incrementAndGet();
+
+		DeviceData[] devices = lookup.get();
+
+		synchronized (this) {
+			if (devices != null && generation == this.generation.get()) {
+				Entry entry = this.getOrCreateEntry(userNumber);
+				entry.devices = devices;
+				entry.devicesExpireAt = this.clock.millis() + this.ttl;
+			}
+		}
+
+		return devices;
+	}
+
+	public AnchorCredentials getCredentials(Long userNumber, Supplier<AnchorCredentials> lookup) {
+		long generation = this.generation.get();
+
+		synchronized (this) {
+			Entry entry = this.getEntry(userNumber);
+
+			if (entry != null && entry.credentials != null && entry.credentialsExpireAt > this.clock.millis()) {
+				this.hits.incrementAndGet();
+				return entry.credentials;
+			}
+		}
+
+		this.misses.incrementAndGet();
+
+		AnchorCredentials credentials = lookup.get();
+
+		synchronized (this) {
+			if (credentials != null && generation == this.generation.get()) {
+				Entry entry = this.getOrCreateEntry(userNumber);
+				entry.credentials = credentials;
+				entry.credentialsExpireAt = this.clock.millis() + this.ttl;
+			}
+		}
+
+		return credentials;
+	}
+
+	public synchronized void invalidate(Long userNumber) {
+		this.generation.incrementAndGet();
+		this.entries.remove(userNumber);
+	}
+
+	public synchronized void invalidateAll() {
+		this.generation.incrementAndGet();
+		this.entries.clear();
+	}
+
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	public double getHitRate() {
+		long hits = this.hits.get();
+		long total = hits + this.misses.get();
+
+		return total == 0 ? 0.0 : (double) hits / total;
+	}
+
+	Entry getEntry(Long userNumber) {
+		return this.entries.get(userNumber);
+	}
+
+	Entry getOrCreateEntry(Long userNumber) {
+		Entry entry = this.entries.get(userNumber);
+
+		if (entry == null) {
+			entry = new Entry();
+			this.entries.put(userNumber, entry);
+		}
+
+		return entry;
+	}
+
+	static final class Entry {
+		DeviceData[] devices;
+
+		long devicesExpireAt;
+
+		AnchorCredentials credentials;
+
+		long credentialsExpireAt;
+	}
+}
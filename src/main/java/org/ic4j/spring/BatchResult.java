@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.util.concurrent.CompletionException;
+
+/*
+ * Outcome of a single call within a CallBatch
+ */
+public final class BatchResult {
+	final Object value;
+
+	final Throwable error;
+
+	BatchResult(Object value, Throwable error) {
+		this.value = value;
+		this.error = error;
+	}
+
+	static BatchResult success(Object value) {
+		return new BatchResult(value, null);
+	}
+
+	static BatchResult failure(Throwable error) {
+		if (error instanceof CompletionException && error.getCause() != null)
+			error = error.getCause();
+
+		return new BatchResult(null, error);
+	}
+
+	public boolean isSuccess() {
+		return this.error == null;
+	}
+
+	public <T> T getValue() {
+		return (T) this.value;
+	}
+
+	public Throwable getError() {
+		return this.error;
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Runs a set of canister calls concurrently with bounded parallelism and one
+ * overall deadline. Results are returned in the order the calls were added,
+ * a failed or timed out call does not affect the others.
+ * 
+ * List<BatchResult> results = service.batch().add("getOffers").add("getRequests").execute();
+ * 
+ * Batches are created by Service.batch and call methods of that service.
+ * Calls go through callAsync, methods it rejects (generic or Optional results,
+ * services typed by an IDL file) run the blocking call on the task executor.
+ */
+public final class CallBatch {
+	static final int DEFAULT_PARALLELISM = 8;
+	static final long DEFAULT_TIMEOUT = 30000;
+
+	static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "ic4j-batch-timer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	final Service service;
+
+	final List<Call> calls = new ArrayList<Call>();
+
+	int parallelism = DEFAULT_PARALLELISM;
+
+	long timeout = DEFAULT_TIMEOUT;
+
+	CallBatch(Service service) {
+		if (service == null)
+			throw new IllegalArgumentException("Service is required");
+
+		this.service = service;
+	}
+
+	public CallBatch add(String methodName, Object... args) {
+		return this.add(this.service, methodName, args);
+	}
+
+	// callAsync is protected, only the package may batch calls on other services
+	CallBatch add(Service service, String methodName, Object... args) {
+		this.calls.add(new Call(service, methodName, args));
+
+		return this;
+	}
+
+	public CallBatch parallelism(int parallelism) {
+		if (parallelism <= 0)
+			throw new IllegalArgumentException("Parallelism must be positive");
+
+		this.parallelism = parallelism;
+
+		return this;
+	}
+
+	public CallBatch timeout(long timeout, TimeUnit unit) {
+		this.timeout = unit.toMillis(timeout);
+
+		return this;
+	}
+
+	/*
+	 * Blocks until all calls complete or the deadline passes
+	 */
+	public List<BatchResult> execute() throws InterruptedException {
+		try {
+			return this.executeAsync().get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	public CompletableFuture<List<BatchResult>> executeAsync() {
+		int size = this.calls.size();
+
+		if (size == 0)
+			return CompletableFuture.completedFuture(Collections.<BatchResult>emptyList());
+
+		List<CompletableFuture<BatchResult>> results = new ArrayList<CompletableFuture<BatchResult>>(size);
+
+		for (int i = 0; i < size; i++)
+			results.add(new CompletableFuture<BatchResult>());
+
+		AtomicInteger next = new AtomicInteger();
+
+		for (int i = 0; i < Math.min(this.parallelism, size); i++)
+			this.startNext(next, results);
+
+		ScheduledFuture<?> deadline = TIMER.schedule(() -> {
+			for (CompletableFuture<BatchResult> result : results)
+				result.complete(BatchResult.failure(new TimeoutException("Batch deadline exceeded")));
+		}, this.timeout, TimeUnit.MILLISECONDS);
+
+		return CompletableFuture.allOf(results.toArray(new CompletableFuture[size])).thenApply(ignored -> {
+			deadline.cancel(false);
+			
+			List<BatchResult> values = new ArrayList<BatchResult>(size);
+
+			for (CompletableFuture<BatchResult> result : results)
+				values.add(result.join());
+
+			return values;
+		});
+	}
+
+	void startNext(AtomicInteger next, List<CompletableFuture<BatchResult>> results) {
+		int index;
+
+		// calls completing synchronously continue the loop instead of recursing
+		while ((index = next.getAndIncrement()) < results.size()) {
+			CompletableFuture<BatchResult> result = results.get(index);
+
+			// the deadline already passed for this call
+			if (result.isDone())
+				continue;
+
+			Call call = this.calls.get(index);
+
+			CompletableFuture<Object> response;
+
+			try {
+				response = call.service.batchCall(call.methodName, call.args);
+			} catch (RuntimeException e) {
+				response = new CompletableFuture<Object>();
+				response.completeExceptionally(e);
+			}
+
+			if (!response.isDone()) {
+				response.whenComplete((value, ex) -> {
+					complete(result, value, ex);
+
+					this.startNext(next, results);
+				});
+
+				return;
+			}
+
+			response.whenComplete((value, ex) -> complete(result, value, ex));
+		}
+	}
+
+	static void complete(CompletableFuture<BatchResult> result, Object value, Throwable ex) {
+		if (ex == null)
+			result.complete(BatchResult.success(value));
+		else
+			result.complete(BatchResult.failure(ex));
+	}
+
+	static final class Call {
+		final Service service;
+
+		final String methodName;
+
+		final Object[] args;
+
+		Call(Service service, String methodName, Object[] args) {
+			this.service = service;
+			this.methodName = methodName;
+			this.args = args;
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.spring;
+
+import java.util.Arrays;
+
+/*
+ * Identifies a canister call by method name and Candid encoded arguments
+ */
+public final class CallKey {
+	final String methodName;
+
+	final byte[] arg;
+
+	final int hash;
+
+	public CallKey(String methodName, byte[] arg) {
+		this.methodName = methodName;
+		this.arg = arg;
+		this.hash = 31 * methodName.hashCode() + Arrays.hashCode(arg);
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+
+		if (!(obj instanceof CallKey))
+			return false;
+
+		CallKey other = (CallKey) obj;
+
+		return this.hash == other.hash && this.methodName.equals(other.methodName)
+				&& Arrays.equals(this.arg, other.arg);
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.spring;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.ToLongFunction;
+
+/*
+ * Receives timing, payload size and error information for canister calls.
+ * Services skip all instrumentation when no CallMetrics is set.
+ */
+public interface CallMetrics {
+	/*
+	 * Called when a call is sent (delta 1) and when it completes (delta -1)
+	 */
+	void inFlight(String canister, String method, boolean query, int delta);
+
+	/*
+	 * Records a completed call. Payload sizes are -1 when not known, error is null
+	 * for successful calls.
+	 */
+	void record(String canister, String method, boolean query, long durationNanos, int requestBytes,
+			int responseBytes, Throwable error);
+
+	/*
+	 * Publishes the hit and miss counts of a pool or cache, read from state
+	 * whenever the metrics are collected. Ignored by default.
+	 */
+	default <T> void bindPool(String pool, T state, ToLongFunction<T> hits, ToLongFunction<T> misses) {
+	}
+
+	default <T> CompletableFuture<T> observe(String canister, String method, boolean query, int requestBytes,
+			CompletableFuture<T> future) {
+		long start = System.nanoTime();
+
+		this.inFlight(canister, method, query, 1);
+
+		return future.whenComplete((value, ex) -> {
+			this.inFlight(canister, method, query, -1);
+
+			int responseBytes = value instanceof byte[] ? ((byte[]) value).length : -1;
+
+			this.record(canister, method, query, System.nanoTime() - start, requestBytes, responseBytes, ex);
+		});
+	}
+}
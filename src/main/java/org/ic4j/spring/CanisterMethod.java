@@ -0,0 +1,209 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.spring;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.ic4j.agent.Agent;
+import org.ic4j.agent.QueryBuilder;
+import org.ic4j.agent.UpdateBuilder;
+import org.ic4j.agent.Waiter;
+import org.ic4j.agent.annotations.Argument;
+import org.ic4j.agent.annotations.QUERY;
+import org.ic4j.candid.annotations.Name;
+import org.ic4j.candid.parser.IDLArgs;
+import org.ic4j.candid.parser.IDLValue;
+import org.ic4j.candid.pojo.PojoDeserializer;
+import org.ic4j.candid.pojo.PojoSerializer;
+import org.ic4j.types.Principal;
+
+/*
+ * Resolved metadata of a canister interface method, used by the asynchronous
+ * call path to encode arguments and dispatch query or update calls without
+ * blocking. Arguments are encoded from their @Argument types and the response
+ * is decoded into the declared class, which matches FuncProxy only for methods
+ * without generic parameter or return types on services that don't load their
+ * Candid types from an IDL file. Other methods are rejected by checkSupported.
+ */
+final class CanisterMethod {
+	static final int DEFAULT_WAITER_TIMEOUT = 60;
+	static final int DEFAULT_WAITER_SLEEP = 5;
+
+	static final PojoSerializer POJO_SERIALIZER = PojoSerializer.create();
+	static final PojoDeserializer POJO_DESERIALIZER = PojoDeserializer.create();
+
+	final Method method;
+
+	final String name;
+
+	final boolean isQuery;
+
+	final Class<?> responseClass;
+
+	final int waiterTimeout;
+
+	final int waiterSleep;
+
+	// why this method can't be called like FuncProxy calls it, null if it can
+	final String unsupported;
+
+	// update calls poll their request status with this strategy instead of the Waiter, if set
+	PollingStrategy pollingStrategy;
+
+	CanisterMethod(Method method, boolean idlTyped) {
+		this.method = method;
+
+		if (method.isAnnotationPresent(Name.class))
+			this.name = method.getAnnotation(Name.class).value();
+		else
+			this.name = method.getName();
+
+		this.isQuery = method.isAnnotationPresent(QUERY.class);
+
+		if (method.isAnnotationPresent(org.ic4j.agent.annotations.Waiter.class)) {
+			org.ic4j.agent.annotations.Waiter waiterAnnotation = method
+					.getAnnotation(org.ic4j.agent.annotations.Waiter.class);
+
+			this.waiterTimeout = waiterAnnotation.timeout();
+			this.waiterSleep = waiterAnnotation.sleep();
+		} else {
+			this.waiterTimeout = DEFAULT_WAITER_TIMEOUT;
+			this.waiterSleep = DEFAULT_WAITER_SLEEP;
+		}
+
+		Type responseType = responseType(method);
+
+		this.responseClass = responseType instanceof Class ? (Class<?>) responseType : Object.class;
+		this.unsupported = unsupported(method, responseType, idlTyped);
+	}
+
+	/*
+	 * idlTyped is set when the service takes its Candid types from an IDL file
+	 */
+	static CanisterMethod resolve(Class<?> interfaceClass, String methodName, boolean idlTyped) {
+		for (Method method : interfaceClass.getMethods()) {
+			if (method.getName().equals(methodName))
+				return new CanisterMethod(method, idlTyped);
+		}
+
+		throw new IllegalArgumentException("Method " + methodName + " is not defined in " + interfaceClass.getName());
+	}
+
+	// declared response type, unwrapped from CompletableFuture
+	static Type responseType(Method method) {
+		if (!CompletableFuture.class.isAssignableFrom(method.getReturnType()))
+			return method.getGenericReturnType();
+
+		Type genericType = method.getGenericReturnType();
+
+		if (genericType instanceof ParameterizedType)
+			return ((ParameterizedType) genericType).getActualTypeArguments()[0];
+
+		return Object.class;
+	}
+
+	static String unsupported(Method method, Type responseType, boolean idlTyped) {
+		if (idlTyped)
+			return "its service loads Candid types from an IDL file";
+
+		if (!(responseType instanceof Class))
+			return "it returns the generic type " + responseType.getTypeName();
+
+		Class<?> responseClass = (Class<?>) responseType;
+
+		if (IDLArgs.class.isAssignableFrom(responseClass) || IDLValue.class.isAssignableFrom(responseClass))
+			return "it returns raw Candid values";
+
+		for (Type parameterType : method.getGenericParameterTypes()) {
+			if (!(parameterType instanceof Class))
+				return "its parameter type " + parameterType.getTypeName() + " is generic";
+		}
+
+		return null;
+	}
+
+	boolean isSupported() {
+		return this.unsupported == null;
+	}
+
+	/*
+	 * Fails instead of encoding or decoding differently from FuncProxy
+	 */
+	void checkSupported() {
+		if (this.unsupported != null)
+			throw new UnsupportedOperationException(
+					"Method " + this.method.getName() + " can only be called with call, " + this.unsupported);
+	}
+
+	byte[] encode(Object... args) {
+		List<IDLValue> values = new ArrayList<IDLValue>();
+
+		if (args != null) {
+			Annotation[][] parameterAnnotations = this.method.getParameterAnnotations();
+
+			for (int i = 0; i < args.length; i++) {
+				Argument argumentAnnotation = null;
+
+				if (i < parameterAnnotations.length) {
+					for (Annotation annotation : parameterAnnotations[i]) {
+						if (annotation instanceof Argument)
+							argumentAnnotation = (Argument) annotation;
+					}
+				}
+
+				if (argumentAnnotation != null)
+					values.add(IDLValue.create(args[i], POJO_SERIALIZER, argumentAnnotation.value()));
+				else
+					values.add(IDLValue.create(args[i], POJO_SERIALIZER));
+			}
+		}
+
+		return IDLArgs.create(values).toBytes();
+	}
+
+	<T> T decode(byte[] output) {
+		if (this.responseClass == void.class || this.responseClass == Void.class || output == null)
+			return null;
+
+		IDLArgs outArgs = IDLArgs.fromBytes(output);
+
+		if (outArgs.getArgs().isEmpty())
+			return null;
+
+		return (T) outArgs.getArgs().get(0).getValue(POJO_DESERIALIZER, this.responseClass);
+	}
+
+	CompletableFuture<byte[]> invoke(Agent agent, Principal canister, Principal effectiveCanister, byte[] arg) {
+		if (this.isQuery)
+			return QueryBuilder.create(agent, canister, this.name).effectiveCanisterId(effectiveCanister).arg(arg)
+					.call();
+
+		PollingStrategy pollingStrategy = this.pollingStrategy;
+
+		if (pollingStrategy != null)
+			return RequestPoller.callAndPoll(agent, canister, effectiveCanister, this.name, arg, pollingStrategy);
+
+		return UpdateBuilder.create(agent, canister, this.name).effectiveCanisterId(effectiveCanister).arg(arg)
+				.callAndWait(Waiter.create(this.waiterTimeout, this.waiterSleep));
+	}
+}
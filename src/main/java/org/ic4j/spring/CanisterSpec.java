@@ -0,0 +1,50 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.math.BigInteger;
+import java.util.Optional;
+
+import org.ic4j.management.CanisterSettings;
+import org.ic4j.management.Mode;
+
+/*
+ * Describes one canister of a fleet rollout. When cycles are set the canister
+ * is created with provisional_create_canister_with_cycles, otherwise with
+ * create_canister.
+ */
+public final class CanisterSpec {
+	public String name;
+
+	public Optional<CanisterSettings> settings = Optional.empty();
+
+	public Optional<BigInteger> cycles = Optional.empty();
+
+	public Mode mode = Mode.install;
+
+	public byte[] wasmModule;
+
+	public byte[] arg;
+
+	public CanisterSpec() {
+	}
+
+	public CanisterSpec(String name, byte[] wasmModule, byte[] arg) {
+		this.name = name;
+		this.wasmModule = wasmModule;
+		this.arg = arg;
+	}
+}
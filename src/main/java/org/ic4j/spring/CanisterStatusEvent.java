@@ -0,0 +1,66 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import org.ic4j.management.CanisterStatusResponse;
+import org.ic4j.types.Principal;
+import org.springframework.context.ApplicationEvent;
+
+/*
+ * Published by CanisterStatusMonitor when a canister crosses a configured
+ * threshold or changes its status. previous is null on the first refresh.
+ */
+public final class CanisterStatusEvent extends ApplicationEvent {
+	private static final long serialVersionUID = 1L;
+
+	public enum Type {
+		CYCLES_LOW, MEMORY_HIGH, STATUS_CHANGED
+	}
+
+	final Type type;
+
+	final Principal canisterId;
+
+	final transient CanisterStatusResponse previous;
+
+	final transient CanisterStatusResponse current;
+
+	public CanisterStatusEvent(Object source, Type type, Principal canisterId, CanisterStatusResponse previous,
+			CanisterStatusResponse current) {
+		super(source);
+
+		this.type = type;
+		this.canisterId = canisterId;
+		this.previous = previous;
+		this.current = current;
+	}
+
+	public Type getType() {
+		return this.type;
+	}
+
+	public Principal getCanisterId() {
+		return this.canisterId;
+	}
+
+	public CanisterStatusResponse getPrevious() {
+		return this.previous;
+	}
+
+	public CanisterStatusResponse getCurrent() {
+		return this.current;
+	}
+}
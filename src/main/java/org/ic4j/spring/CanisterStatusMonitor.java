@@ -0,0 +1,311 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.ic4j.management.CanisterStatusResponse;
+import org.ic4j.types.Principal;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.env.Environment;
+
+/*
+ * Refreshes the status of registered canisters in the background and serves
+ * reads from the last snapshot. Publishes CanisterStatusEvent when cycles drop
+ * below ic.statusMonitor.cyclesThreshold, memory grows above
+ * ic.statusMonitor.memoryThreshold or the canister status changes.
+ * 
+ * ic.statusMonitor.interval refresh interval in milliseconds (default 10000)
+ * ic.statusMonitor.concurrency maximum status calls in flight (default 8)
+ * ic.statusMonitor.timeout maximum duration of a refresh round in milliseconds (default 30000)
+ */
+public final class CanisterStatusMonitor implements SmartLifecycle {
+	static final Log LOG = LogFactory.getLog(CanisterStatusMonitor.class);
+
+	static final long DEFAULT_INTERVAL = 10000;
+	static final int DEFAULT_CONCURRENCY = 8;
+	static final long DEFAULT_TIMEOUT = 30000;
+
+	final ManagementService managementService;
+
+	final ApplicationEventPublisher eventPublisher;
+
+	final Set<Principal> canisters = ConcurrentHashMap.newKeySet();
+
+	final Map<Principal, CanisterStatusResponse> snapshot = new ConcurrentHashMap<Principal, CanisterStatusResponse>();
+
+	final Set<Principal> inFlight = ConcurrentHashMap.newKeySet();
+
+	final Object refreshLock = new Object();
+
+	// canisters a timed out round did not reach
+	List<Principal> unpolled = Collections.emptyList();
+
+	long interval = DEFAULT_INTERVAL;
+
+	int concurrency = DEFAULT_CONCURRENCY;
+
+	long timeout = DEFAULT_TIMEOUT;
+
+	BigInteger cyclesThreshold;
+
+	BigInteger memoryThreshold;
+
+	// shared by all rounds, calls left in flight by a timed out round keep their permits
+	final Semaphore permits;
+
+	ScheduledExecutorService scheduler;
+
+	ScheduledFuture<?> refreshTask;
+
+	public CanisterStatusMonitor(ManagementService managementService, ApplicationEventPublisher eventPublisher,
+			Environment env) {
+		this.managementService = managementService;
+		this.eventPublisher = eventPublisher;
+
+		if (env != null) {
+			this.interval = env.getProperty("ic.statusMonitor.interval", Long.class, DEFAULT_INTERVAL);
+			this.concurrency = env.getProperty("ic.statusMonitor.concurrency", Integer.class, DEFAULT_CONCURRENCY);
+			this.timeout = env.getProperty("ic.statusMonitor.timeout", Long.class, DEFAULT_TIMEOUT);
+			this.cyclesThreshold = env.getProperty("ic.statusMonitor.cyclesThreshold", BigInteger.class);
+			this.memoryThreshold = env.getProperty("ic.statusMonitor.memoryThreshold", BigInteger.class);
+		}
+
+		if (this.concurrency <= 0)
+			throw new IllegalArgumentException("Concurrency must be positive");
+
+		this.permits = new Semaphore(this.concurrency);
+	}
+
+	public void register(Principal canisterId) {
+		this.canisters.add(canisterId);
+	}
+
+	public void unregister(Principal canisterId) {
+		this.canisters.remove(canisterId);
+		this.snapshot.remove(canisterId);
+	}
+
+	/*
+	 * Last known status, null until the first refresh of the canister completed
+	 */
+	public CanisterStatusResponse getStatus(Principal canisterId) {
+		return this.snapshot.get(canisterId);
+	}
+
+	public Map<Principal, CanisterStatusResponse> getSnapshot() {
+		return Collections.unmodifiableMap(new HashMap<Principal, CanisterStatusResponse>(this.snapshot));
+	}
+
+	public void setCyclesThreshold(BigInteger cyclesThreshold) {
+		this.cyclesThreshold = cyclesThreshold;
+	}
+
+	public void setMemoryThreshold(BigInteger memoryThreshold) {
+		this.memoryThreshold = memoryThreshold;
+	}
+
+	@Override
+	public synchronized void start() {
+		if (this.scheduler != null)
+			return;
+
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "ic4j-status-monitor");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		this.refreshTask = this.scheduler.scheduleWithFixedDelay(() -> {
+			// an exception escaping the task would cancel all further refreshes
+			try {
+				this.refresh();
+			} catch (RuntimeException e) {
+				LOG.warn("Canister status refresh failed", e);
+			}
+		}, 0, this.interval, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (this.scheduler == null)
+			return;
+
+		this.refreshTask.cancel(false);
+		this.scheduler.shutdownNow();
+		this.scheduler = null;
+	}
+
+	@Override
+	public synchronized boolean isRunning() {
+		return this.scheduler != null;
+	}
+
+	/*
+	 * Refreshes all registered canisters, waiting for the previous round so a
+	 * slow replica does not pile up status calls. A round gives up after
+	 * ic.statusMonitor.timeout, calls still in flight then keep their permits
+	 * and only update the snapshot when they complete, canisters the round did
+	 * not reach are polled first in the next round.
+	 */
+	public void refresh() {
+		// not the monitor of this, stop must not wait for a round to time out
+		synchronized (this.refreshLock) {
+			this.refreshRound();
+		}
+	}
+
+	void refreshRound() {
+		long deadline = System.currentTimeMillis() + this.timeout;
+
+		Set<Principal> round = new LinkedHashSet<Principal>();
+
+		for (Principal canisterId : this.unpolled)
+			if (this.canisters.contains(canisterId))
+				round.add(canisterId);
+
+		round.addAll(this.canisters);
+
+		this.unpolled = Collections.emptyList();
+
+		Iterator<Principal> iterator = round.iterator();
+
+		while (iterator.hasNext()) {
+			Principal canisterId = iterator.next();
+
+			// the call of an earlier round has not completed yet
+			if (!this.inFlight.add(canisterId))
+				continue;
+
+			boolean acquired = false;
+
+			try {
+				acquired = this.permits.tryAcquire(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			if (!acquired) {
+				this.inFlight.remove(canisterId);
+
+				List<Principal> unpolled = new ArrayList<Principal>();
+				unpolled.add(canisterId);
+				iterator.forEachRemaining(unpolled::add);
+
+				this.unpolled = unpolled;
+
+				if (!Thread.currentThread().isInterrupted())
+					LOG.warn("Canister status refresh timed out after " + this.timeout + " ms, " + unpolled.size()
+							+ " canisters left for the next round");
+
+				return;
+			}
+
+			AtomicBoolean released = new AtomicBoolean();
+			Runnable release = () -> {
+				if (released.compareAndSet(false, true)) {
+					this.inFlight.remove(canisterId);
+					this.permits.release();
+				}
+			};
+
+			try {
+				CompletableFuture<CanisterStatusResponse> response = this.managementService.canisterStatus(canisterId);
+
+				response.whenComplete((status, ex) -> {
+					release.run();
+
+					if (ex != null) {
+						LOG.warn("Unable to get status of canister " + canisterId, ex);
+						return;
+					}
+
+					// an event listener failure would otherwise be lost in the discarded future
+					try {
+						if (status != null && this.canisters.contains(canisterId))
+							this.update(canisterId, status);
+					} catch (RuntimeException e) {
+						LOG.warn("Unable to update status of canister " + canisterId, e);
+					}
+				});
+			} catch (RuntimeException e) {
+				release.run();
+
+				LOG.warn("Unable to get status of canister " + canisterId, e);
+			}
+		}
+
+		try {
+			if (this.permits.tryAcquire(this.concurrency, Math.max(0, deadline - System.currentTimeMillis()),
+					TimeUnit.MILLISECONDS))
+				this.permits.release(this.concurrency);
+			else
+				LOG.warn("Canister status refresh timed out after " + this.timeout + " ms");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	void update(Principal canisterId, CanisterStatusResponse current) {
+		CanisterStatusResponse previous = this.snapshot.put(canisterId, current);
+
+		if (this.eventPublisher == null)
+			return;
+
+		if (previous != null && previous.status != current.status)
+			this.publish(CanisterStatusEvent.Type.STATUS_CHANGED, canisterId, previous, current);
+
+		if (this.cyclesThreshold != null && isBelow(current.cycles, this.cyclesThreshold)
+				&& (previous == null || !isBelow(previous.cycles, this.cyclesThreshold)))
+			this.publish(CanisterStatusEvent.Type.CYCLES_LOW, canisterId, previous, current);
+
+		if (this.memoryThreshold != null && isAbove(current.memorySize, this.memoryThreshold)
+				&& (previous == null || !isAbove(previous.memorySize, this.memoryThreshold)))
+			this.publish(CanisterStatusEvent.Type.MEMORY_HIGH, canisterId, previous, current);
+	}
+
+	void publish(CanisterStatusEvent.Type type, Principal canisterId, CanisterStatusResponse previous,
+			CanisterStatusResponse current) {
+		this.eventPublisher.publishEvent(new CanisterStatusEvent(this, type, canisterId, previous, current));
+	}
+
+	static boolean isBelow(BigInteger value, BigInteger threshold) {
+		return value != null && value.compareTo(threshold) < 0;
+	}
+
+	static boolean isAbove(BigInteger value, BigInteger threshold) {
+		return value != null && value.compareTo(threshold) > 0;
+	}
+}
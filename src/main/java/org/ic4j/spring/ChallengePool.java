@@ -0,0 +1,242 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Clock;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.imageio.ImageIO;
+
+import org.ic4j.internetidentity.Challenge;
+
+/*
+ * Pool of fresh CAPTCHA challenges with decoded images. Whenever the pool drops
+ * to the low-water mark a low priority worker requests new challenges from the
+ * canister and decodes their images off the request thread. Challenges are
+ * valid for 5 minutes after creation, the pool discards them after the
+ * configured validity so a taken challenge still leaves time to solve it.
+ * The pool is filled at construction. When it is empty callers fall back to
+ * creating a challenge inline.
+ */
+public final class ChallengePool {
+	// the canister accepts challenge results up to 5 minutes after creation
+	public static final long DEFAULT_VALIDITY = TimeUnit.MINUTES.toMillis(3);
+
+	final Supplier<CompletableFuture<Challenge>> source;
+
+	final int targetSize;
+
+	final int lowWaterMark;
+
+	final long validity;
+
+	final Queue<PreparedChallenge> challenges = new ConcurrentLinkedQueue<PreparedChallenge>();
+
+	// pooled plus requested challenges, bounds the refill to the target size
+	final AtomicInteger size = new AtomicInteger();
+
+	final AtomicLong hits = new AtomicLong();
+
+	final AtomicLong misses = new AtomicLong();
+
+	final AtomicLong expired = new AtomicLong();
+
+	final Clock clock;
+
+	final ScheduledExecutorService executor;
+
+	public ChallengePool(Supplier<CompletableFuture<Challenge>> source, int targetSize, int lowWaterMark,
+			long validity) {
+		this(source, targetSize, lowWaterMark, validity, Clock.systemUTC());
+	}
+
+	public ChallengePool(Supplier<CompletableFuture<Challenge>> source, int targetSize, int lowWaterMark,
+			long validity, Clock clock) {
+		if (source == null)
+			throw new IllegalArgumentException("Challenge source is required");
+
+		if (targetSize <= 0)
+			throw new IllegalArgumentException("Target size must be positive");
+
+		if (lowWaterMark < 0 || lowWaterMark >= targetSize)
+			throw new IllegalArgumentException("Low-water mark must be between 0 and target size");
+
+		if (validity <= 0 || validity >= TimeUnit.MINUTES.toMillis(5))
+			throw new IllegalArgumentException("Validity must be positive and shorter than 5 minutes");
+
+		this.source = source;
+		this.targetSize = targetSize;
+		this.lowWaterMark = lowWaterMark;
+		this.validity = validity;
+		this.clock = clock;
+
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "ic4j-challenge-pool");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+
+		// drop challenges about to expire and replace them
+		long sweepInterval = Math.max(1000, validity / 4);
+
+		this.executor.scheduleWithFixedDelay(this::sweep, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+
+		this.refill();
+	}
+
+	/*
+	 * Returns a pooled challenge immediately, or creates one when the pool is empty
+	 */
+	public CompletableFuture<PreparedChallenge> take() {
+		long now = this.clock.millis();
+
+		PreparedChallenge challenge;
+
+		while ((challenge = this.challenges.poll()) != null) {
+			this.size.decrementAndGet();
+
+			if (!challenge.isExpired(now)) {
+				this.hits.incrementAndGet();
+				this.refill();
+
+				return CompletableFuture.completedFuture(challenge);
+			}
+
+			this.expired.incrementAndGet();
+		}
+
+		this.misses.incrementAndGet();
+		this.refill();
+
+		return this.source.get().thenApply(created -> prepare(created, this.clock.millis() + DEFAULT_VALIDITY));
+	}
+
+	/*
+	 * Tops up the pool, it is already filled at construction
+	 */
+	public void prefill() {
+		this.refill();
+	}
+
+	public int size() {
+		return this.challenges.size();
+	}
+
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	public long getExpired() {
+		return this.expired.get();
+	}
+
+	public double getHitRate() {
+		long hits = this.hits.get();
+		long total = hits + this.misses.get();
+
+		return total == 0 ? 0.0 : (double) hits / total;
+	}
+
+	public void shutdown() {
+		this.executor.shutdownNow();
+	}
+
+	void refill() {
+		if (this.executor.isShutdown() || this.size.get() > this.lowWaterMark)
+			return;
+
+		int size;
+
+		while ((size = this.size.get()) < this.targetSize) {
+			if (!this.size.compareAndSet(size, size + 1))
+				continue;
+
+			CompletableFuture<Challenge> created;
+
+			// the canister creates the challenge after this, its validity window starts later
+			long requested = this.clock.millis();
+
+			try {
+				created = this.source.get();
+			} catch (RuntimeException e) {
+				this.size.decrementAndGet();
+				return;
+			}
+
+			// decode on the pool worker, not on the transport callback thread
+			created.whenCompleteAsync((challenge, ex) -> {
+				if (ex == null) {
+					try {
+						this.challenges.offer(prepare(challenge, requested + this.validity));
+						return;
+					} catch (RuntimeException e) {
+						// drop a challenge whose image cannot be decoded
+					}
+				}
+
+				this.size.decrementAndGet();
+			}, this.executor);
+		}
+	}
+
+	void sweep() {
+		long now = this.clock.millis();
+
+		if (this.challenges.removeIf(challenge -> {
+			if (!challenge.isExpired(now))
+				return false;
+
+			this.size.decrementAndGet();
+			this.expired.incrementAndGet();
+
+			return true;
+		}))
+			this.refill();
+	}
+
+	static PreparedChallenge prepare(Challenge challenge) {
+		return prepare(challenge, System.currentTimeMillis() + DEFAULT_VALIDITY);
+	}
+
+	static PreparedChallenge prepare(Challenge challenge, long expiresAt) {
+		try {
+			BufferedImage image = org.ic4j.internetidentity.InternetIdentityService.getCaptchaImage(challenge);
+
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			ImageIO.write(image, "png", outputStream);
+
+			return new PreparedChallenge(challenge, image, outputStream.toByteArray(), expiresAt);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to decode CAPTCHA image", e);
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Chunks of a module being installed through the chunk store, handed out one
+ * at a time as upload permits free up. The chunk hashes and the module hash
+ * are complete once next returned null.
+ */
+abstract class ChunkSource {
+	/*
+	 * Next chunk in module order, null once the module is exhausted
+	 */
+	abstract Chunk next() throws IOException;
+
+	abstract ChunkHash[] getChunkHashes();
+
+	abstract byte[] getHash();
+
+	static ChunkSource of(WasmModule wasmModule) {
+		return new ModuleChunkSource(wasmModule);
+	}
+
+	static ChunkSource of(InputStream inputStream) {
+		return new StreamChunkSource(inputStream);
+	}
+
+	static final class Chunk {
+		final byte[] bytes;
+
+		final ChunkHash hash;
+
+		Chunk(byte[] bytes, ChunkHash hash) {
+			this.bytes = bytes;
+			this.hash = hash;
+		}
+	}
+
+	// hashes were computed once by the WasmModule
+	static final class ModuleChunkSource extends ChunkSource {
+		final WasmModule wasmModule;
+
+		final ChunkHash[] chunkHashes;
+
+		int next;
+
+		ModuleChunkSource(WasmModule wasmModule) {
+			this.wasmModule = wasmModule;
+			this.chunkHashes = wasmModule.getChunkHashes();
+		}
+
+		@Override
+		synchronized Chunk next() {
+			if (this.next >= this.chunkHashes.length)
+				return null;
+
+			int index = this.next++;
+
+			return new Chunk(this.wasmModule.getChunk(index), this.chunkHashes[index]);
+		}
+
+		@Override
+		ChunkHash[] getChunkHashes() {
+			return this.chunkHashes;
+		}
+
+		@Override
+		byte[] getHash() {
+			return this.wasmModule.getHash();
+		}
+	}
+
+	// hashes are computed as chunks are read
+	static final class StreamChunkSource extends ChunkSource {
+		final InputStream inputStream;
+
+		final MessageDigest moduleDigest;
+
+		final List<ChunkHash> chunkHashes = new ArrayList<ChunkHash>();
+
+		byte[] hash;
+
+		StreamChunkSource(InputStream inputStream) {
+			this.inputStream = inputStream;
+			this.moduleDigest = sha256();
+		}
+
+		@Override
+		synchronized Chunk next() throws IOException {
+			if (this.hash != null)
+				return null;
+
+			byte[] chunk = readChunk(this.inputStream);
+
+			if (chunk == null) {
+				this.hash = this.moduleDigest.digest();
+				return null;
+			}
+
+			this.moduleDigest.update(chunk);
+
+			ChunkHash chunkHash = new ChunkHash();
+			chunkHash.hash = sha256().digest(chunk);
+			this.chunkHashes.add(chunkHash);
+
+			return new Chunk(chunk, chunkHash);
+		}
+
+		@Override
+		synchronized ChunkHash[] getChunkHashes() {
+			return this.chunkHashes.toArray(new ChunkHash[this.chunkHashes.size()]);
+		}
+
+		@Override
+		synchronized byte[] getHash() {
+			return this.hash;
+		}
+
+		static MessageDigest sha256() {
+			try {
+				return MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	static byte[] readChunk(InputStream inputStream) throws IOException {
+		byte[] chunk = new byte[ManagementService.CHUNK_SIZE];
+		int length = 0;
+		int read;
+
+		while (length < chunk.length && (read = inputStream.read(chunk, length, chunk.length - length)) != -1)
+			length += read;
+
+		if (length == 0)
+			return null;
+
+		return length == chunk.length ? chunk : Arrays.copyOf(chunk, length);
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.ic4j.agent.annotations.Argument;
+import org.ic4j.agent.annotations.UPDATE;
+import org.ic4j.agent.annotations.Waiter;
+import org.ic4j.candid.annotations.Name;
+import org.ic4j.candid.types.Type;
+
+/*
+ * Management canister chunk store methods used for installing large Wasm modules
+ */
+public interface ChunkedCodeProxy {
+	@UPDATE
+	@Name("upload_chunk")
+	@Waiter(timeout = 60)
+	public CompletableFuture<ChunkHash> uploadChunk(@Argument(Type.RECORD) UploadChunkRequest request);
+
+	@UPDATE
+	@Name("stored_chunks")
+	@Waiter(timeout = 30)
+	public CompletableFuture<ChunkHash[]> storedChunks(@Argument(Type.RECORD) StoredChunksRequest request);
+
+	@UPDATE
+	@Name("clear_chunk_store")
+	@Waiter(timeout = 30)
+	public CompletableFuture<Void> clearChunkStore(@Argument(Type.RECORD) StoredChunksRequest request);
+
+	@UPDATE
+	@Name("install_chunked_code")
+	@Waiter(timeout = 120)
+	public CompletableFuture<Void> installChunkedCode(@Argument(Type.RECORD) InstallChunkedCodeRequest request);
+}
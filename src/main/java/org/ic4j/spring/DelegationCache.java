@@ -0,0 +1,351 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.util.ArrayList;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ic4j.internetidentity.GetDelegationResponse;
+import org.ic4j.internetidentity.PrepareDelegationResponse;
+
+/*
+ * Prepared and signed delegations per (anchor, frontend hostname, session key),
+ * kept until shortly before the delegation expires. Lookups without a timestamp
+ * only match entries prepared with the same maxTimeToLive and no_such_delegation
+ * responses are never cached. With refresh enabled, a
+ * background task renews delegations that were used since the last pass and
+ * expire within the refresh window, so returning sessions keep hitting the cache.
+ */
+public final class DelegationCache {
+	static final long NANOS_PER_MILLI = 1000000L;
+
+	final long margin;
+
+	final LinkedHashMap<Key, Entry> entries;
+
+	final AtomicLong hits = new AtomicLong();
+
+	final AtomicLong misses = new AtomicLong();
+
+	final AtomicLong refreshes = new AtomicLong();
+
+	final Clock clock;
+
+	ScheduledExecutorService scheduler;
+
+	/*
+	 * Entries are evicted margin milliseconds before the delegation expires
+	 */
+	public DelegationCache(long margin, int maxSize) {
+		this(margin, maxSize, Clock.systemUTC());
+	}
+
+	public DelegationCache(long margin, int maxSize, Clock clock) {
+		if (margin < 0)
+			throw new IllegalArgumentException("Margin must not be negative");
+
+		if (maxSize <= 0)
+			throw new IllegalArgumentException("Maximum size must be positive");
+
+		this.margin = margin;
+		this.clock = clock;
+		this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	public synchronized PrepareDelegationResponse getPrepared(Long userNumber, String frontendHostname,
+			byte[] sessionKey, Optional<Long> maxTimeToLive) {
+		Entry entry = this.getValidEntry(new Key(userNumber, frontendHostname, sessionKey));
+
+		// the canister keeps prepared signatures only briefly, reuse them only with the signed delegation
+		if (entry == null || entry.delegation == null || !entry.matches(maxTimeToLive))
+			return this.miss();
+
+		return this.hit(entry).prepared;
+	}
+
+	/*
+	 * A timestamp pins the delegation, without it the current delegation
+	 * prepared for maxTimeToLive is returned
+	 */
+	public synchronized GetDelegationResponse getDelegation(Long userNumber, String frontendHostname,
+			byte[] sessionKey, Optional<Long> maxTimeToLive, Long timestamp) {
+		Entry entry = this.getValidEntry(new Key(userNumber, frontendHostname, sessionKey));
+
+		if (entry == null || entry.delegation == null)
+			return this.miss();
+
+		if (timestamp == null ? !entry.matches(maxTimeToLive) : !timestamp.equals(entry.prepared.timestamp))
+			return this.miss();
+
+		return this.hit(entry).delegation;
+	}
+
+	public synchronized void putPrepared(Long userNumber, String frontendHostname, byte[] sessionKey,
+			Optional<Long> maxTimeToLive, PrepareDelegationResponse prepared) {
+		if (prepared == null || prepared.timestamp == null)
+			return;
+
+		// the caller may reuse its session key array
+		Key key = new Key(userNumber, frontendHostname, sessionKey.clone());
+		Entry entry = this.entries.get(key);
+
+		// keep a signed delegation that matches the prepared one
+		if (entry != null && entry.prepared != null && prepared.timestamp.equals(entry.prepared.timestamp))
+			return;
+
+		this.entries.put(key, new Entry(prepared, null, maxTimeToLive, this.expiresAt(prepared)));
+	}
+
+	public synchronized void putDelegation(Long userNumber, String frontendHostname, byte[] sessionKey,
+			Long timestamp, GetDelegationResponse delegation) {
+		// no_such_delegation is returned until the signature is certified, asking again may succeed
+		if (delegation == null || timestamp == null || !isSigned(delegation))
+			return;
+
+		Entry entry = this.entries.get(new Key(userNumber, frontendHostname, sessionKey));
+
+		// only a delegation for the prepared timestamp is known to expire with it
+		if (entry != null && timestamp.equals(entry.prepared.timestamp))
+			entry.delegation = delegation;
+	}
+
+	public synchronized void invalidate(Long userNumber) {
+		this.entries.keySet().removeIf(key -> key.userNumber.equals(userNumber));
+	}
+
+	public synchronized void invalidateAll() {
+		this.entries.clear();
+	}
+
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	public long getRefreshes() {
+		return this.refreshes.get();
+	}
+
+	/*
+	 * Every interval milliseconds renews delegations used since the previous pass
+	 * that expire within refreshAhead milliseconds
+	 */
+	synchronized void startRefresh(long interval, long refreshAhead, Refresher refresher) {
+		if (this.scheduler != null)
+			return;
+
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "ic4j-delegation-refresh");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		this.scheduler.scheduleWithFixedDelay(() -> this.refresh(refreshAhead, refresher), interval, interval,
+				TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void shutdown() {
+		if (this.scheduler != null)
+			this.scheduler.shutdownNow();
+
+		this.scheduler = null;
+	}
+
+	void refresh(long refreshAhead, Refresher refresher) {
+		List<Key> keys = new ArrayList<Key>();
+		List<Entry> hotEntries = new ArrayList<Entry>();
+
+		synchronized (this) {
+			long now = this.clock.millis();
+
+			for (Iterator<Map.Entry<Key, Entry>> iterator = this.entries.entrySet().iterator(); iterator.hasNext();) {
+				Map.Entry<Key, Entry> mapEntry = iterator.next();
+				Entry entry = mapEntry.getValue();
+
+				if (entry.expiresAt <= now) {
+					iterator.remove();
+					continue;
+				}
+
+				if (entry.hot && !entry.refreshing && entry.expiresAt - now <= refreshAhead) {
+					entry.hot = false;
+					entry.refreshing = true;
+
+					keys.add(mapEntry.getKey());
+					hotEntries.add(entry);
+				}
+			}
+		}
+
+		for (int i = 0; i < keys.size(); i++) {
+			Key key = keys.get(i);
+			Entry entry = hotEntries.get(i);
+
+			CompletableFuture<GetDelegationResponse> refreshed;
+
+			try {
+				refreshed = refresher.refresh(key.userNumber, key.frontendHostname, key.sessionKey, entry.maxTimeToLive);
+			} catch (RuntimeException e) {
+				refreshed = new CompletableFuture<GetDelegationResponse>();
+				refreshed.completeExceptionally(e);
+			}
+
+			refreshed.whenComplete((delegation, ex) -> {
+				synchronized (this) {
+					entry.refreshing = false;
+				}
+
+				if (ex == null)
+					this.refreshes.incrementAndGet();
+			});
+		}
+	}
+
+	Entry getValidEntry(Key key) {
+		Entry entry = this.entries.get(key);
+
+		if (entry != null && entry.expiresAt <= this.clock.millis()) {
+			this.entries.remove(key);
+			return null;
+		}
+
+		return entry;
+	}
+
+	Entry hit(Entry entry) {
+		this.hits.incrementAndGet();
+		entry.hot = true;
+
+		return entry;
+	}
+
+	<T> T miss() {
+		this.misses.incrementAndGet();
+
+		return null;
+	}
+
+	// the Candid variant signed_delegation | no_such_delegation is mapped to an enum
+	static boolean isSigned(GetDelegationResponse delegation) {
+		return delegation == GetDelegationResponse.signed_delegation;
+	}
+
+	long expiresAt(PrepareDelegationResponse prepared) {
+		// delegation expiration is in nanoseconds since the epoch
+		return prepared.timestamp / NANOS_PER_MILLI - this.margin;
+	}
+
+	@FunctionalInterface
+	interface Refresher {
+		CompletableFuture<GetDelegationResponse> refresh(Long userNumber, String frontendHostname, byte[] sessionKey,
+				Optional<Long> maxTimeToLive);
+	}
+
+	static final class Key {
+		final Long userNumber;
+
+		final String frontendHostname;
+
+		final byte[] sessionKey;
+
+		final int hash;
+
+		Key(Long userNumber, String frontendHostname, byte[] sessionKey) {
+			this.userNumber = userNumber;
+			this.frontendHostname = frontendHostname;
+			this.sessionKey = sessionKey;
+			this.hash = 31 * (31 * Objects.hashCode(userNumber) + Objects.hashCode(frontendHostname))
+					+ Arrays.hashCode(sessionKey);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+
+			if (!(obj instanceof Key))
+				return false;
+
+			Key other = (Key) obj;
+
+			return this.hash == other.hash && Objects.equals(this.userNumber, other.userNumber)
+					&& Objects.equals(this.frontendHostname, other.frontendHostname)
+					&& Arrays.equals(this.sessionKey, other.sessionKey);
+		}
+	}
+
+	static final class Entry {
+		final PrepareDelegationResponse prepared;
+
+		final Optional<Long> maxTimeToLive;
+
+		final long expiresAt;
+
+		GetDelegationResponse delegation;
+
+		boolean hot;
+
+		boolean refreshing;
+
+		Entry(PrepareDelegationResponse prepared, GetDelegationResponse delegation, Optional<Long> maxTimeToLive,
+				long expiresAt) {
+			this.prepared = prepared;
+			this.delegation = delegation;
+			this.maxTimeToLive = maxTimeToLive;
+			this.expiresAt = expiresAt;
+		}
+
+		// the delegation expiration depends on the requested maximum time to live
+		boolean matches(Optional<Long> maxTimeToLive) {
+			return Objects.equals(normalize(this.maxTimeToLive), normalize(maxTimeToLive));
+		}
+
+		static Optional<Long> normalize(Optional<Long> maxTimeToLive) {
+			return maxTimeToLive == null ? Optional.empty() : maxTimeToLive;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.ic4j.agent.annotations.Argument;
+import org.ic4j.agent.annotations.QUERY;
+import org.ic4j.candid.annotations.Name;
+import org.ic4j.candid.types.Type;
+import org.ic4j.internetidentity.GetDelegationResponse;
+
+/*
+ * Non-blocking get_delegation query, InternetIdentityProxy only has the blocking one
+ */
+public interface DelegationProxy {
+	@QUERY
+	@Name("get_delegation")
+	public CompletableFuture<GetDelegationResponse> getDelegation(@Argument(Type.NAT64) Long userNumber,
+			@Argument(Type.TEXT) String frontendHostname, byte[] sessionKey, @Argument(Type.NAT64) Long timestamp);
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/*
+ * Picks between equivalent endpoints. Every endpoint keeps an EWMA of its
+ * response times and requests go to the healthy endpoint with the lowest
+ * average. Only retryable failures, as decided by the predicate, count toward
+ * marking an endpoint unhealthy and only those are retried once on the next
+ * best endpoint. Hedged requests are also sent to the next best endpoint when
+ * the first has not answered by the p95 latency of the replies to hedged
+ * requests, the first reply wins.
+ */
+public final class EndpointRouter<T> {
+	static final double EWMA_ALPHA = 0.2;
+
+	public static final int FAILURE_THRESHOLD = 3;
+
+	// hedge delay used until enough latencies are sampled
+	public static final long DEFAULT_HEDGE_DELAY = 200;
+
+	static final long MIN_HEDGE_DELAY = 10;
+
+	static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "ic4j-routing-timer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	final List<Endpoint<T>> endpoints;
+
+	final Predicate<Throwable> retryable;
+
+	final LatencyHistogram queryLatencies = new LatencyHistogram(256);
+
+	final AtomicLong hedged = new AtomicLong();
+
+	ScheduledFuture<?> healthCheck;
+
+	public EndpointRouter(List<String> urls, List<T> targets, Predicate<Throwable> retryable) {
+		if (targets == null || targets.isEmpty())
+			throw new IllegalArgumentException("At least one endpoint is required");
+
+		if (urls.size() != targets.size())
+			throw new IllegalArgumentException("Each endpoint needs its URL");
+
+		List<Endpoint<T>> endpoints = new ArrayList<Endpoint<T>>(targets.size());
+
+		for (int i = 0; i < targets.size(); i++)
+			endpoints.add(new Endpoint<T>(urls.get(i), targets.get(i)));
+
+		this.endpoints = Collections.unmodifiableList(endpoints);
+		this.retryable = retryable;
+	}
+
+	/*
+	 * Probes every endpoint each interval milliseconds, a successful probe
+	 * brings an unhealthy endpoint back
+	 */
+	public synchronized <R> void startHealthCheck(long interval, Function<T, ? extends CompletableFuture<R>> probe) {
+		if (this.healthCheck != null)
+			return;
+
+		this.healthCheck = TIMER.scheduleWithFixedDelay(() -> {
+			for (Endpoint<T> endpoint : this.endpoints)
+				this.send(endpoint, probe);
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void stopHealthCheck() {
+		if (this.healthCheck != null)
+			this.healthCheck.cancel(false);
+
+		this.healthCheck = null;
+	}
+
+	public List<Endpoint<T>> getEndpoints() {
+		return this.endpoints;
+	}
+
+	public long getHedgedRequests() {
+		return this.hedged.get();
+	}
+
+	public LatencyHistogram getQueryLatencies() {
+		return this.queryLatencies;
+	}
+
+	public <R> CompletableFuture<R> route(Function<T, ? extends CompletableFuture<R>> request) {
+		List<Endpoint<T>> ranked = this.rank();
+
+		CompletableFuture<R> response = new CompletableFuture<R>();
+
+		this.send(ranked.get(0), request).whenComplete((value, ex) -> {
+			if (ex == null) {
+				response.complete(value);
+				return;
+			}
+
+			if (ranked.size() < 2 || !this.retryable.test(ex)) {
+				response.completeExceptionally(unwrap(ex));
+				return;
+			}
+
+			this.send(ranked.get(1), request).whenComplete((retryValue, retryEx) -> {
+				if (retryEx == null)
+					response.complete(retryValue);
+				else
+					response.completeExceptionally(unwrap(retryEx));
+			});
+		});
+
+		return response;
+	}
+
+	public <R> CompletableFuture<R> hedge(Function<T, ? extends CompletableFuture<R>> request) {
+		List<Endpoint<T>> ranked = this.rank();
+
+		if (ranked.size() < 2)
+			return this.route(request);
+
+		CompletableFuture<R> response = new CompletableFuture<R>();
+
+		AtomicInteger pending = new AtomicInteger(1);
+		AtomicBoolean hedgeSent = new AtomicBoolean();
+
+		Runnable sendHedge = () -> {
+			if (response.isDone() || !hedgeSent.compareAndSet(false, true))
+				return;
+
+			this.hedged.incrementAndGet();
+			pending.incrementAndGet();
+
+			this.sendSampled(ranked.get(1), request).whenComplete((value, ex) -> this.complete(response, pending, value, ex));
+		};
+
+		ScheduledFuture<?> timer = TIMER.schedule(sendHedge, this.hedgeDelay(), TimeUnit.MILLISECONDS);
+
+		this.sendSampled(ranked.get(0), request).whenComplete((value, ex) -> {
+			timer.cancel(false);
+
+			if (ex != null) {
+				// a rejected request fails the same way everywhere, don't hedge it
+				if (!this.retryable.test(ex)) {
+					response.completeExceptionally(unwrap(ex));
+					return;
+				}
+
+				// send the hedge right away when the first endpoint fails early
+				sendHedge.run();
+			}
+
+			this.complete(response, pending, value, ex);
+		});
+
+		return response;
+	}
+
+	<R> void complete(CompletableFuture<R> response, AtomicInteger pending, R value, Throwable ex) {
+		if (ex == null)
+			response.complete(value);
+		else if (pending.decrementAndGet() == 0)
+			response.completeExceptionally(unwrap(ex));
+	}
+
+	/*
+	 * Every reply is sampled, also the ones that lost against the hedge, so the
+	 * delay follows the latency of the endpoints and not of the winners
+	 */
+	<R> CompletableFuture<R> sendSampled(Endpoint<T> endpoint, Function<T, ? extends CompletableFuture<R>> request) {
+		long start = System.nanoTime();
+
+		return this.send(endpoint, request).whenComplete((value, ex) -> {
+			if (ex == null)
+				this.queryLatencies.record(System.nanoTime() - start);
+		});
+	}
+
+	public long hedgeDelay() {
+		long p95 = this.queryLatencies.percentile(0.95);
+
+		if (p95 < 0)
+			return DEFAULT_HEDGE_DELAY;
+
+		return Math.max(MIN_HEDGE_DELAY, TimeUnit.NANOSECONDS.toMillis(p95));
+	}
+
+	<R> CompletableFuture<R> send(Endpoint<T> endpoint, Function<T, ? extends CompletableFuture<R>> request) {
+		long start = System.nanoTime();
+
+		CompletableFuture<R> response;
+
+		try {
+			response = request.apply(endpoint.target);
+		} catch (RuntimeException e) {
+			response = new CompletableFuture<R>();
+			response.completeExceptionally(e);
+		}
+
+		return response.whenComplete((value, ex) -> {
+			if (ex == null)
+				endpoint.success(System.nanoTime() - start);
+			else if (this.retryable.test(ex))
+				endpoint.failure();
+		});
+	}
+
+	/*
+	 * Endpoints by health, then by average latency. Unmeasured endpoints come
+	 * first so each one gets sampled.
+	 */
+	public List<Endpoint<T>> rank() {
+		@SuppressWarnings("unchecked")
+		Endpoint<T>[] ranked = this.endpoints.toArray(new Endpoint[this.endpoints.size()]);
+
+		Arrays.sort(ranked, (a, b) -> {
+			if (a.isHealthy() != b.isHealthy())
+				return a.isHealthy() ? -1 : 1;
+
+			return Double.compare(a.getLatency(), b.getLatency());
+		});
+
+		return Arrays.asList(ranked);
+	}
+
+	static Throwable unwrap(Throwable error) {
+		while ((error instanceof CompletionException || error instanceof ExecutionException)
+				&& error.getCause() != null)
+			error = error.getCause();
+
+		return error;
+	}
+
+	public static final class Endpoint<T> {
+		final String url;
+
+		final T target;
+
+		final AtomicInteger failures = new AtomicInteger();
+
+		// nanoseconds, 0 until the first reply
+		volatile double latency;
+
+		Endpoint(String url, T target) {
+			this.url = url;
+			this.target = target;
+		}
+
+		void success(long duration) {
+			this.failures.set(0);
+
+			synchronized (this) {
+				this.latency = this.latency == 0 ? duration : EWMA_ALPHA * duration + (1 - EWMA_ALPHA) * this.latency;
+			}
+		}
+
+		void failure() {
+			this.failures.incrementAndGet();
+		}
+
+		public String getUrl() {
+			return this.url;
+		}
+
+		public T getTarget() {
+			return this.target;
+		}
+
+		public int getFailures() {
+			return this.failures.get();
+		}
+
+		public boolean isHealthy() {
+			return this.failures.get() < FAILURE_THRESHOLD;
+		}
+
+		/*
+		 * Exponentially weighted average response time in nanoseconds
+		 */
+		public double getLatency() {
+			return this.latency;
+		}
+	}
+
+	/*
+	 * Sliding window of recent latencies
+	 */
+	public static final class LatencyHistogram {
+		static final int MIN_SAMPLES = 20;
+
+		final long[] samples;
+
+		int count;
+
+		int next;
+
+		public LatencyHistogram(int size) {
+			this.samples = new long[size];
+		}
+
+		public synchronized void record(long latency) {
+			this.samples[this.next] = latency;
+			this.next = (this.next + 1) % this.samples.length;
+
+			if (this.count < this.samples.length)
+				this.count++;
+		}
+
+		// -1 until the window holds enough samples for the percentile to be meaningful
+		public synchronized long percentile(double percentile) {
+			if (this.count < MIN_SAMPLES)
+				return -1;
+
+			long[] sorted = Arrays.copyOf(this.samples, this.count);
+			Arrays.sort(sorted);
+
+			return sorted[Math.max(0, (int) Math.ceil(percentile * this.count) - 1)];
+		}
+	}
+}
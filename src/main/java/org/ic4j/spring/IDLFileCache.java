@@ -0,0 +1,82 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+ * Resolves @IDLFile names once per process. A file in the application
+ * directory wins, otherwise the classpath resource is copied once to a
+ * temporary file so the proxy builder can read it from disk.
+ */
+public final class IDLFileCache {
+	static final ConcurrentMap<String, Path> IDL_FILES = new ConcurrentHashMap<String, Path>();
+
+	private IDLFileCache() {
+	}
+
+	public static Path get(String idlFileName, File fileDirectory, ClassLoader classLoader) throws IOException {
+		String key = fileDirectory.getAbsolutePath() + File.pathSeparator + idlFileName;
+
+		Path idlFile = IDL_FILES.get(key);
+
+		if (idlFile == null) {
+			synchronized (IDL_FILES) {
+				idlFile = IDL_FILES.get(key);
+
+				if (idlFile == null) {
+					idlFile = resolve(idlFileName, fileDirectory, classLoader);
+
+					IDL_FILES.put(key, idlFile);
+				}
+			}
+		}
+
+		return idlFile;
+	}
+
+	public static void clear() {
+		IDL_FILES.clear();
+	}
+
+	static Path resolve(String idlFileName, File fileDirectory, ClassLoader classLoader) throws IOException {
+		Path idlFile = Paths.get(fileDirectory + File.separator + idlFileName);
+
+		if (Files.isReadable(idlFile))
+			return idlFile;
+
+		try (InputStream inputStream = classLoader.getResourceAsStream(idlFileName)) {
+			// keep the original path, the proxy builder reports the missing file
+			if (inputStream == null)
+				return idlFile;
+
+			Path tempFile = Files.createTempFile("ic4j-", "-" + Paths.get(idlFileName).getFileName());
+			tempFile.toFile().deleteOnExit();
+
+			Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+
+			return tempFile;
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.ic4j.agent.annotations.IdentityType;
+import org.ic4j.agent.identity.AnonymousIdentity;
+import org.ic4j.agent.identity.BasicIdentity;
+import org.ic4j.agent.identity.Identity;
+import org.ic4j.agent.identity.Prime256v1Identity;
+import org.ic4j.agent.identity.Secp256k1Identity;
+
+/*
+ * Process wide cache of identities loaded from PEM files, keyed by identity
+ * type and normalized file path, so each file is parsed once.
+ */
+public final class IdentityCache {
+	static final ConcurrentMap<String, Identity> IDENTITIES = new ConcurrentHashMap<String, Identity>();
+
+	private IdentityCache() {
+	}
+
+	public static Identity get(IdentityType type, Path path) {
+		if (type == IdentityType.ANONYMOUS || path == null)
+			return new AnonymousIdentity();
+
+		String key = type.name() + ':' + path.toAbsolutePath().normalize();
+
+		Identity identity = IDENTITIES.get(key);
+
+		if (identity == null) {
+			identity = load(type, path);
+
+			Identity existing = IDENTITIES.putIfAbsent(key, identity);
+
+			if (existing != null)
+				identity = existing;
+		}
+
+		return identity;
+	}
+
+	/*
+	 * Also drops the root keys shared by all AgentRegistry instances, agents
+	 * created afterwards fetch them again
+	 */
+	public static void clear() {
+		IDENTITIES.clear();
+		AgentRegistry.ROOT_KEYS.clear();
+	}
+
+	static Identity load(IdentityType type, Path path) {
+		switch (type) {
+		case BASIC:
+			return BasicIdentity.fromPEMFile(path);
+		case SECP256K1:
+			return Secp256k1Identity.fromPEMFile(path);
+		case PRIME256V1:
+			return Prime256v1Identity.fromPEMFile(path);
+		default:
+			return new AnonymousIdentity();
+		}
+	}
+}
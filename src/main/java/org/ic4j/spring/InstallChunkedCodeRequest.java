@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.math.BigInteger;
+import java.util.Optional;
+
+import org.ic4j.candid.annotations.Field;
+import org.ic4j.candid.annotations.Name;
+import org.ic4j.candid.types.Type;
+import org.ic4j.management.Mode;
+import org.ic4j.types.Principal;
+
+public final class InstallChunkedCodeRequest {
+	@Name("mode")
+	@Field(Type.VARIANT)
+	public Mode mode;
+
+	@Name("target_canister")
+	@Field(Type.PRINCIPAL)
+	public Principal targetCanister;
+
+	@Name("store_canister")
+	@Field(Type.OPT)
+	public Optional<Principal> storeCanister = Optional.empty();
+
+	@Name("chunk_hashes_list")
+	@Field(Type.VEC)
+	public ChunkHash[] chunkHashesList;
+
+	@Name("wasm_module_hash")
+	@Field(Type.NAT8)
+	public byte[] wasmModuleHash;
+
+	@Name("arg")
+	@Field(Type.NAT8)
+	public byte[] arg;
+
+	@Name("sender_canister_version")
+	@Field(Type.NAT64)
+	public Optional<BigInteger> senderCanisterVersion = Optional.empty();
+}
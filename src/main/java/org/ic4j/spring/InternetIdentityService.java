@@ -27,14 +27,11 @@ import java.security.NoSuchProviderException;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.ic4j.agent.Agent;
-import org.ic4j.agent.AgentBuilder;
 import org.ic4j.agent.ProxyBuilder;
-import org.ic4j.agent.ReplicaTransport;
-import org.ic4j.agent.http.ReplicaApacheHttpTransport;
 import org.ic4j.agent.identity.Identity;
 import org.ic4j.candid.parser.IDLArgs;
 import org.ic4j.internetidentity.AddTentativeDeviceResponse;
@@ -53,6 +50,9 @@ import org.ic4j.internetidentity.PrepareDelegationResponse;
 import org.ic4j.internetidentity.RegisterResponse;
 import org.ic4j.internetidentity.VerifyTentativeDeviceResponse;
 import org.ic4j.types.Principal;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
 import org.springframework.scheduling.annotation.Async;
@@ -60,12 +60,38 @@ import org.springframework.stereotype.Service;
 
 @Service
 @Configuration
-public final class InternetIdentityService {
+public final class InternetIdentityService implements DisposableBean {
 	
 	InternetIdentityProxy internetIdentityProxy;
 	
+	DelegationProxy delegationProxy;
+	
+	SessionKeyPool sessionKeyPool;
+	
+	String iiCanisterId;
+	
+	CallMetrics callMetrics;
+	
+	AnchorCache anchorCache;
+	
+	DelegationCache delegationCache;
+	
+	ChallengePool challengePool;
+	
 
 	public InternetIdentityService(Identity identity, Environment env) {
+		this(identity, env, AgentRegistry.getDefault(env));
+	}
+	
+	/*
+	 * Uses the AgentRegistry bean, or the default registry configured from env when there is none
+	 */
+	@Autowired
+	public InternetIdentityService(Identity identity, Environment env, ObjectProvider<AgentRegistry> agentRegistry) {
+		this(identity, env, agentRegistry.getIfAvailable(() -> AgentRegistry.getDefault(env)));
+	}
+	
+	public InternetIdentityService(Identity identity, Environment env, AgentRegistry agentRegistry) {
 		String iiCanister = env.getProperty("ii.canister");
 		String iiLocation = env.getProperty("ii.location");
 
@@ -73,6 +99,8 @@ public final class InternetIdentityService {
 		
 		props.setProperty("ii.canister", iiCanister);
 		
+		this.iiCanisterId = iiCanister;
+		
 		boolean isLocal = false;
 		
 		try {
@@ -80,25 +108,164 @@ public final class InternetIdentityService {
 		} catch (Exception e) {
 		}
 
-		ReplicaTransport transport;
 		try {
-			transport = ReplicaApacheHttpTransport.create(iiLocation);
-			Agent agent = new AgentBuilder().transport(transport).identity(identity).build();
-
-			if (isLocal)
-				agent.fetchRootKey();
+			Agent agent = agentRegistry.getAgent(iiLocation, identity, isLocal);
 			
 			this.internetIdentityProxy = ProxyBuilder
 					.create(agent, Principal.fromString(iiCanister))
 					.getProxy(InternetIdentityProxy.class);
 			
+			this.delegationProxy = ProxyBuilder
+					.create(agent, Principal.fromString(iiCanister))
+					.getProxy(DelegationProxy.class);
+			
 		} catch (URISyntaxException e) {
 			e.printStackTrace();
 		}
 		
+		int sessionKeyPoolSize = env.getProperty("ii.sessionKeyPool.size", Integer.class, 0);
+		
+		if (sessionKeyPoolSize > 0)
+			this.sessionKeyPool = new SessionKeyPool(sessionKeyPoolSize,
+					env.getProperty("ii.sessionKeyPool.lowWaterMark", Integer.class, sessionKeyPoolSize / 2),
+					env.getProperty("ii.sessionKeyPool.algorithms", Algorithm[].class, Algorithm.values()));
+		
+		long anchorCacheTtl = env.getProperty("ii.anchorCache.ttl", Long.class, 0L);
+		
+		if (anchorCacheTtl > 0)
+			this.anchorCache = new AnchorCache(anchorCacheTtl, env.getProperty("ii.anchorCache.maxSize", Integer.class, 1000));
+		
+		int delegationCacheSize = env.getProperty("ii.delegationCache.maxSize", Integer.class, 0);
+		
+		if (delegationCacheSize > 0) {
+			DelegationCache delegationCache = new DelegationCache(
+					env.getProperty("ii.delegationCache.margin", Long.class, 60000L), delegationCacheSize);
+			
+			long refreshAhead = env.getProperty("ii.delegationCache.refreshAhead", Long.class, 0L);
+			
+			if (refreshAhead > 0)
+				delegationCache.startRefresh(env.getProperty("ii.delegationCache.refreshInterval", Long.class, 30000L),
+						refreshAhead, this::loadDelegation);
+			
+			this.delegationCache = delegationCache;
+		}
+		
+		int challengePoolSize = env.getProperty("ii.challengePool.size", Integer.class, 0);
+		
+		if (challengePoolSize > 0)
+			this.challengePool = new ChallengePool(
+					() -> this.observe("createChallenge", internetIdentityProxy.createChallenge()), challengePoolSize,
+					env.getProperty("ii.challengePool.lowWaterMark", Integer.class, challengePoolSize / 2),
+					env.getProperty("ii.challengePool.validity", Long.class, ChallengePool.DEFAULT_VALIDITY));
+	}
+	
+	public void setSessionKeyPool(SessionKeyPool sessionKeyPool) {
+		this.sessionKeyPool = sessionKeyPool;
+	}
+	
+	public SessionKeyPool getSessionKeyPool() {
+		return this.sessionKeyPool;
+	}
+	
+	public void setAnchorCache(AnchorCache anchorCache) {
+		this.anchorCache = anchorCache;
+	}
+	
+	public AnchorCache getAnchorCache() {
+		return this.anchorCache;
+	}
+	
+	public void setDelegationCache(DelegationCache delegationCache) {
+		this.delegationCache = delegationCache;
+	}
+	
+	public DelegationCache getDelegationCache() {
+		return this.delegationCache;
+	}
+	
+	public void setChallengePool(ChallengePool challengePool) {
+		this.challengePool = challengePool;
+	}
+	
+	public ChallengePool getChallengePool() {
+		return this.challengePool;
+	}
+	
+	@Autowired(required = false)
+	public void setCallMetrics(CallMetrics callMetrics) {
+		this.callMetrics = callMetrics;
+		
+		if (callMetrics == null)
+			return;
+		
+		if (this.sessionKeyPool != null)
+			callMetrics.bindPool("sessionKey", this.sessionKeyPool, SessionKeyPool::getHits, SessionKeyPool::getMisses);
+		
+		if (this.anchorCache != null)
+			callMetrics.bindPool("anchor", this.anchorCache, AnchorCache::getHits, AnchorCache::getMisses);
+		
+		if (this.delegationCache != null)
+			callMetrics.bindPool("delegation", this.delegationCache, DelegationCache::getHits, DelegationCache::getMisses);
+		
+		if (this.challengePool != null)
+			callMetrics.bindPool("challenge", this.challengePool, ChallengePool::getHits, ChallengePool::getMisses);
+	}
+	
+	/*
+	 * Stops the background threads of the session key pool, delegation cache and challenge pool
+	 */
+	@Override
+	public void destroy() {
+		if (this.sessionKeyPool != null)
+			this.sessionKeyPool.shutdown();
+		
+		if (this.delegationCache != null)
+			this.delegationCache.shutdown();
+		
+		if (this.challengePool != null)
+			this.challengePool.shutdown();
+	}
+	
+	<T> CompletableFuture<T> observe(String method, CompletableFuture<T> future) {
+		return this.observe(method, false, future);
+	}
+	
+	<T> CompletableFuture<T> observe(String method, boolean query, CompletableFuture<T> future) {
+		CallMetrics callMetrics = this.callMetrics;
+		
+		if (callMetrics == null)
+			return future;
+		
+		return callMetrics.observe(this.iiCanisterId, method, query, -1, future);
+	}
+	
+	<T> T observe(String method, Supplier<T> query) {
+		CallMetrics callMetrics = this.callMetrics;
+		
+		if (callMetrics == null)
+			return query.get();
+		
+		long start = System.nanoTime();
+		Throwable error = null;
+		
+		callMetrics.inFlight(this.iiCanisterId, method, true, 1);
+		
+		try {
+			return query.get();
+		} catch (RuntimeException | Error e) {
+			error = e;
+			
+			throw e;
+		} finally {
+			callMetrics.inFlight(this.iiCanisterId, method, true, -1);
+			callMetrics.record(this.iiCanisterId, method, true, System.nanoTime() - start, -1, -1, error);
+		}
 	}
 	
 	public KeyPair generateSessionKey(Algorithm algorithm) throws NoSuchAlgorithmException, NoSuchProviderException, InvalidAlgorithmParameterException {
+		if (this.sessionKeyPool != null)
+			return this.sessionKeyPool.take(algorithm);
+		
 		return org.ic4j.internetidentity.InternetIdentityService.generateSessionKey(algorithm);
 	}	
 	
@@ -113,15 +280,46 @@ public final class InternetIdentityService {
 	 * Authorization: Anyone can call this
 	 */
 	public DeviceData[] lookup(Long userNumber) {
-		return internetIdentityProxy.lookup(userNumber);
+		AnchorCache anchorCache = this.anchorCache;
+		
+		if (anchorCache == null)
+			return this.observe("lookup", () -> internetIdentityProxy.lookup(userNumber));
+		
+		return anchorCache.getDevices(userNumber, () -> this.observe("lookup", () -> internetIdentityProxy.lookup(userNumber)));
 	}
 	
 	public AnchorCredentials getAnchorCredentials(Long userNumber) {
-		return internetIdentityProxy.getAnchorCredentials(userNumber);
+		AnchorCache anchorCache = this.anchorCache;
+		
+		if (anchorCache == null)
+			return this.observe("getAnchorCredentials", () -> internetIdentityProxy.getAnchorCredentials(userNumber));
+		
+		return anchorCache.getCredentials(userNumber,
+				() -> this.observe("getAnchorCredentials", () -> internetIdentityProxy.getAnchorCredentials(userNumber)));
+	}
+	
+	/*
+	 * Drops cached devices and credentials of the anchor when the change is sent
+	 * and again when it completes, successful or not. Cached delegations of the
+	 * anchor are dropped as well.
+	 */
+	<T> CompletableFuture<T> invalidateAnchor(Long userNumber, CompletableFuture<T> future) {
+		AnchorCache anchorCache = this.anchorCache;
+		DelegationCache delegationCache = this.delegationCache;
+		
+		if (delegationCache != null)
+			delegationCache.invalidate(userNumber);
+		
+		if (anchorCache == null)
+			return future;
+		
+		anchorCache.invalidate(userNumber);
+		
+		return future.whenComplete((response, ex) -> anchorCache.invalidate(userNumber));
 	}	
 
 	public InternetIdentityStats stats() {
-		return internetIdentityProxy.stats();
+		return this.observe("stats", () -> internetIdentityProxy.stats());
 	}
 
 	/*
@@ -136,9 +334,22 @@ public final class InternetIdentityService {
 	 * Authorization: This request must be sent to the canister with caller that is
 	 * the self-authenticating id derived from the given DeviceKey.
 	 */
-	@Async 
 	public CompletableFuture<Challenge> createChallenge() {
-		return internetIdentityProxy.createChallenge();
+		return this.observe("createChallenge", internetIdentityProxy.createChallenge());
+	}
+	
+	/*
+	 * Takes a challenge with its decoded image from the challenge pool, completing
+	 * immediately while the pool has fresh challenges. Without a pool the
+	 * challenge is created and decoded on demand.
+	 */
+	public CompletableFuture<PreparedChallenge> takeChallenge() {
+		ChallengePool challengePool = this.challengePool;
+		
+		if (challengePool != null)
+			return challengePool.take();
+		
+		return this.observe("createChallenge", internetIdentityProxy.createChallenge()).thenApply(ChallengePool::prepare);
 	}
 
 	
@@ -150,9 +361,8 @@ public final class InternetIdentityService {
 	 * Authorization: This request must be sent to the canister with caller that is
 	 * the self-authenticating id derived from the given DeviceKey.
 	 */	 
-	@Async
 	public CompletableFuture<RegisterResponse> register(DeviceData deviceData, ChallengeResult challengeResult) {
-		return internetIdentityProxy.register(deviceData, challengeResult);
+		return this.observe("register", internetIdentityProxy.register(deviceData, challengeResult));
 	}
 
 	/*
@@ -180,26 +390,89 @@ public final class InternetIdentityService {
 	 * the self-authenticating id derived from any of the public keys of devices
 	 * associated with the user before this call.
 	 */	
-	@Async
 	public CompletableFuture<PrepareDelegationResponse> prepareDelegation(Long userNumber, String frontendHostname,
 			byte[] sessionKey, Optional<Long> maxTimeToLive) {
+		DelegationCache delegationCache = this.delegationCache;
+		
+		if (delegationCache == null)
+			return this.fetchPrepareDelegation(userNumber, frontendHostname, sessionKey, maxTimeToLive);
+		
+		PrepareDelegationResponse prepared = delegationCache.getPrepared(userNumber, frontendHostname, sessionKey, maxTimeToLive);
+		
+		if (prepared != null)
+			return CompletableFuture.completedFuture(prepared);
+		
+		return this.fetchPrepareDelegation(userNumber, frontendHostname, sessionKey, maxTimeToLive).thenApply(response -> {
+			delegationCache.putPrepared(userNumber, frontendHostname, sessionKey, maxTimeToLive, response);
+			
+			return response;
+		});
+	}
+	
+	CompletableFuture<PrepareDelegationResponse> fetchPrepareDelegation(Long userNumber, String frontendHostname,
+			byte[] sessionKey, Optional<Long> maxTimeToLive) {
 		CompletableFuture<PrepareDelegationResponse> response = new CompletableFuture<PrepareDelegationResponse>();
 
-		try {
-
-			IDLArgs outArgs = internetIdentityProxy.prepareDelegation(userNumber, frontendHostname, sessionKey, maxTimeToLive).get();
-			PrepareDelegationResponse prepareDelegationResponse = new PrepareDelegationResponse();
-
-			prepareDelegationResponse.userKey = ArrayUtils.toPrimitive((Byte[]) outArgs.getArgs().get(0).getValue());
-			prepareDelegationResponse.timestamp = outArgs.getArgs().get(1).getValue();
+		this.observe("prepareDelegation",
+				internetIdentityProxy.prepareDelegation(userNumber, frontendHostname, sessionKey, maxTimeToLive))
+				.whenComplete((outArgs, ex) -> {
+					if (ex == null)
+						try {
+							response.complete(toPrepareDelegationResponse(outArgs));
+						} catch (Exception e) {
+							response.completeExceptionally(new InternetIdentityError(e));
+						}
+					else
+						response.completeExceptionally(new InternetIdentityError(ex));
+				});
 
-			response.complete(prepareDelegationResponse);
-
-		} catch (InterruptedException | ExecutionException e) {
-			response.completeExceptionally(new InternetIdentityError(e));
+		return response;
+	}
+	
+	/*
+	 * Runs prepare_delegation and, once the replica replies, fetches the signed
+	 * delegation with get_delegation using the returned timestamp. The whole login
+	 * flow completes without blocking a thread on the update call.
+	 */
+	public CompletableFuture<GetDelegationResponse> prepareAndGetDelegation(Long userNumber, String frontendHostname,
+			byte[] sessionKey, Optional<Long> maxTimeToLive) {
+		DelegationCache delegationCache = this.delegationCache;
+		
+		if (delegationCache != null) {
+			GetDelegationResponse delegation = delegationCache.getDelegation(userNumber, frontendHostname, sessionKey, maxTimeToLive, null);
+			
+			if (delegation != null)
+				return CompletableFuture.completedFuture(delegation);
 		}
+		
+		return this.loadDelegation(userNumber, frontendHostname, sessionKey, maxTimeToLive);
+	}
+	
+	/*
+	 * Always calls the canister, storing both responses in the delegation cache if enabled
+	 */
+	CompletableFuture<GetDelegationResponse> loadDelegation(Long userNumber, String frontendHostname,
+			byte[] sessionKey, Optional<Long> maxTimeToLive) {
+		DelegationCache delegationCache = this.delegationCache;
+		
+		return this.fetchPrepareDelegation(userNumber, frontendHostname, sessionKey, maxTimeToLive)
+				.thenCompose(prepareDelegationResponse -> {
+					if (delegationCache != null)
+						delegationCache.putPrepared(userNumber, frontendHostname, sessionKey, maxTimeToLive,
+								prepareDelegationResponse);
+					
+					return this.fetchDelegation(userNumber, frontendHostname, sessionKey,
+							prepareDelegationResponse.timestamp);
+				});
+	}
+	
+	static PrepareDelegationResponse toPrepareDelegationResponse(IDLArgs outArgs) {
+		PrepareDelegationResponse prepareDelegationResponse = new PrepareDelegationResponse();
 
-		return response;
+		prepareDelegationResponse.userKey = ArrayUtils.toPrimitive((Byte[]) outArgs.getArgs().get(0).getValue());
+		prepareDelegationResponse.timestamp = outArgs.getArgs().get(1).getValue();
+		
+		return prepareDelegationResponse;
 	}
 
 	/*
@@ -217,8 +490,55 @@ public final class InternetIdentityService {
 	 */	
 	public GetDelegationResponse getDelegation(Long userNumber, String frontendHostname, byte[] sessionKey,
 			Long timestamp) throws InternetIdentityError {
-
-		return internetIdentityProxy.getDelegation(userNumber, frontendHostname, sessionKey, timestamp);
+		DelegationCache delegationCache = this.delegationCache;
+		
+		if (delegationCache == null)
+			return this.observe("getDelegation", () -> internetIdentityProxy.getDelegation(userNumber, frontendHostname, sessionKey, timestamp));
+		
+		GetDelegationResponse delegation = delegationCache.getDelegation(userNumber, frontendHostname, sessionKey, null, timestamp);
+		
+		if (delegation != null)
+			return delegation;
+		
+		delegation = this.observe("getDelegation", () -> internetIdentityProxy.getDelegation(userNumber, frontendHostname, sessionKey, timestamp));
+		
+		delegationCache.putDelegation(userNumber, frontendHostname, sessionKey, timestamp, delegation);
+		
+		return delegation;
+	}
+	
+	/*
+	 * Non-blocking variant of getDelegation
+	 */
+	public CompletableFuture<GetDelegationResponse> getDelegationAsync(Long userNumber, String frontendHostname,
+			byte[] sessionKey, Long timestamp) {
+		DelegationCache delegationCache = this.delegationCache;
+		
+		if (delegationCache != null) {
+			GetDelegationResponse delegation = delegationCache.getDelegation(userNumber, frontendHostname, sessionKey, null, timestamp);
+			
+			if (delegation != null)
+				return CompletableFuture.completedFuture(delegation);
+		}
+		
+		return this.fetchDelegation(userNumber, frontendHostname, sessionKey, timestamp);
+	}
+	
+	CompletableFuture<GetDelegationResponse> fetchDelegation(Long userNumber, String frontendHostname,
+			byte[] sessionKey, Long timestamp) {
+		DelegationCache delegationCache = this.delegationCache;
+		
+		CompletableFuture<GetDelegationResponse> response = this.observe("getDelegation", true,
+				delegationProxy.getDelegation(userNumber, frontendHostname, sessionKey, timestamp));
+		
+		if (delegationCache == null)
+			return response;
+		
+		return response.thenApply(delegation -> {
+			delegationCache.putDelegation(userNumber, frontendHostname, sessionKey, timestamp, delegation);
+			
+			return delegation;
+		});
 	}
 	
 	/*
@@ -232,10 +552,9 @@ public final class InternetIdentityService {
 	 * the self-authenticating id derived from any of the public keys of devices
 	 * associated with the user before this call.
 	 */
-	@Async
 	public CompletableFuture<Long> enterDeviceRegistrationMode(Long userNumber)
 	{
-		return internetIdentityProxy.enterDeviceRegistrationMode(userNumber);
+		return this.observe("enterDeviceRegistrationMode", internetIdentityProxy.enterDeviceRegistrationMode(userNumber));
 	}
 	
 	/*
@@ -249,7 +568,12 @@ public final class InternetIdentityService {
 	@Async
 	public void exitDeviceRegistrationMode(Long userNumber)
 	{
-		internetIdentityProxy.exitDeviceRegistrationMode(userNumber);
+		this.exitDeviceRegistrationModeAsync(userNumber);
+	}
+	
+	public CompletableFuture<Void> exitDeviceRegistrationModeAsync(Long userNumber)
+	{
+		return this.observe("exitDeviceRegistrationMode", internetIdentityProxy.exitDeviceRegistrationMode(userNumber));
 	}
 
 	/*
@@ -263,10 +587,9 @@ public final class InternetIdentityService {
 	 * 
 	 * Authorization: Anyone can call this
 	 */
-	@Async
 	public CompletableFuture<AddTentativeDeviceResponse> addTentativeDevice(Long userNumber, DeviceData deviceData) {
 
-		return internetIdentityProxy.addTentativeDevice(userNumber, deviceData);
+		return this.observe("addTentativeDevice", internetIdentityProxy.addTentativeDevice(userNumber, deviceData));
 	}
 
 	/*
@@ -281,10 +604,9 @@ public final class InternetIdentityService {
 	 * the self-authenticating id derived from any of the public keys of devices
 	 * associated with the user before this call.
 	 */	
-	@Async
 	public CompletableFuture<VerifyTentativeDeviceResponse> verifyTentativeDevice(Long userNumber,
 			String verificationCode) {
-		return internetIdentityProxy.verifyTentativeDevice(userNumber, verificationCode);
+		return this.invalidateAnchor(userNumber, this.observe("verifyTentativeDevice", internetIdentityProxy.verifyTentativeDevice(userNumber, verificationCode)));
 	}
 
 	/*
@@ -302,7 +624,11 @@ public final class InternetIdentityService {
 	 */
 	@Async
 	public void add(Long userNumber, DeviceData deviceData) {
-		internetIdentityProxy.add(userNumber, deviceData);
+		this.addAsync(userNumber, deviceData);
+	}
+	
+	public CompletableFuture<Void> addAsync(Long userNumber, DeviceData deviceData) {
+		return this.invalidateAnchor(userNumber, this.observe("add", internetIdentityProxy.add(userNumber, deviceData)));
 	}
 
 	/*
@@ -326,12 +652,20 @@ public final class InternetIdentityService {
 	 */	
 	@Async
 	public void remove(Long userNumber, byte[] deviceKey) {
-		internetIdentityProxy.remove(userNumber, deviceKey);
+		this.removeAsync(userNumber, deviceKey);
+	}
+	
+	public CompletableFuture<Void> removeAsync(Long userNumber, byte[] deviceKey) {
+		return this.invalidateAnchor(userNumber, this.observe("remove", internetIdentityProxy.remove(userNumber, deviceKey)));
 	}
 	
 	@Async
 	public void update(Long userNumber, byte[] deviceKey, DeviceData deviceData) {
-		internetIdentityProxy.update(userNumber, deviceKey,deviceData);
+		this.updateAsync(userNumber, deviceKey, deviceData);
+	}
+	
+	public CompletableFuture<Void> updateAsync(Long userNumber, byte[] deviceKey, DeviceData deviceData) {
+		return this.invalidateAnchor(userNumber, this.observe("update", internetIdentityProxy.update(userNumber, deviceKey,deviceData)));
 	}	
 
 	/*
@@ -342,7 +676,7 @@ public final class InternetIdentityService {
 	 * associated with the user before this call.
 	 */	
 	public Principal getPrincipal(Long userNumber, String frontendHostname) {
-		return internetIdentityProxy.getPrincipal(userNumber, frontendHostname);
+		return this.observe("getPrincipal", () -> internetIdentityProxy.getPrincipal(userNumber, frontendHostname));
 	}
 
 	/*
@@ -353,19 +687,21 @@ public final class InternetIdentityService {
 	 * the self-authenticating id derived from any of the public keys of devices
 	 * associated with the user before this call.
 	 */
-	@Async
 	public CompletableFuture<IdentityAnchorInfo> getAnchorInfo(Long userNumber) {
-		return internetIdentityProxy.getAnchorInfo(userNumber);
+		return this.observe("getAnchorInfo", internetIdentityProxy.getAnchorInfo(userNumber));
 	}
 
-	@Async
 	public CompletableFuture<DeployArchiveResult> deployArchive(byte[] wasm) {
-		return internetIdentityProxy.deployArchive(wasm);
+		return this.observe("deployArchive", internetIdentityProxy.deployArchive(wasm));
 	}
 	
 	@Async
 	public void acknowledgeEntries(Long sequenceNumber) {
-		internetIdentityProxy.acknowledgeEntries(sequenceNumber);
+		this.acknowledgeEntriesAsync(sequenceNumber);
+	}
+	
+	public CompletableFuture<Void> acknowledgeEntriesAsync(Long sequenceNumber) {
+		return this.observe("acknowledgeEntries", internetIdentityProxy.acknowledgeEntries(sequenceNumber));
 	}	
 }
 	
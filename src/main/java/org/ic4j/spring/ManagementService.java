@@ -16,17 +16,31 @@
 
 package org.ic4j.spring;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigInteger;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.ic4j.agent.Agent;
-import org.ic4j.agent.AgentBuilder;
 import org.ic4j.agent.ProxyBuilder;
-import org.ic4j.agent.ReplicaTransport;
-import org.ic4j.agent.http.ReplicaApacheHttpTransport;
 import org.ic4j.agent.identity.Identity;
 import org.ic4j.management.CanisterSettings;
 import org.ic4j.management.CanisterStatusRequest;
@@ -45,6 +59,8 @@ import org.ic4j.management.StopCanisterRequest;
 import org.ic4j.management.UninstallCodeRequest;
 import org.ic4j.management.UpdateSettingsRequest;
 import org.ic4j.types.Principal;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
 import org.springframework.scheduling.annotation.Async;
@@ -54,10 +70,39 @@ import org.springframework.stereotype.Service;
 @Service
 @Configuration
 public final class ManagementService {	
+	static final Log LOG = LogFactory.getLog(ManagementService.class);
+	
+	// maximum chunk size accepted by the management canister chunk store
+	public static final int CHUNK_SIZE = 1024 * 1024;
+	
+	// modules up to this size are installed with a single install_code ingress message
+	public static final int INSTALL_CODE_LIMIT = 2000000;
+	
+	static final int DEFAULT_CHUNK_UPLOAD_CONCURRENCY = 4;
 	
 	ManagementProxy managementProxy;
 	
+	ChunkedCodeProxy chunkedCodeProxy;
+	
+	int chunkUploadConcurrency = DEFAULT_CHUNK_UPLOAD_CONCURRENCY;
+	
+	String managementCanisterId;
+	
+	CallMetrics callMetrics;
+	
 	public ManagementService(Identity identity,Principal managementCanister, Principal effectiveCanister, Environment env) throws ManagementError, URISyntaxException {
+		this(identity, managementCanister, effectiveCanister, env, AgentRegistry.getDefault(env));
+	}
+	
+	/*
+	 * Uses the AgentRegistry bean, or the default registry configured from env when there is none
+	 */
+	@Autowired
+	public ManagementService(Identity identity,Principal managementCanister, Principal effectiveCanister, Environment env, ObjectProvider<AgentRegistry> agentRegistry) throws ManagementError, URISyntaxException {
+		this(identity, managementCanister, effectiveCanister, env, agentRegistry.getIfAvailable(() -> AgentRegistry.getDefault(env)));
+	}
+	
+	public ManagementService(Identity identity,Principal managementCanister, Principal effectiveCanister, Environment env, AgentRegistry agentRegistry) throws ManagementError, URISyntaxException {
 		
 		String icLocation = env.getProperty("ic.location");
 
@@ -68,34 +113,58 @@ public final class ManagementService {
         } catch (Exception e) {
         }
         
-        ReplicaTransport transport = ReplicaApacheHttpTransport.create(icLocation);
-        
-		Agent agent = new AgentBuilder().transport(transport).identity(identity).build();
-		
-		if(isLocal) 
-            agent.fetchRootKey();
+		Agent agent = agentRegistry.getAgent(icLocation, identity, isLocal);
 
+		this.managementCanisterId = managementCanister.toString();
+		
 		this.managementProxy = ProxyBuilder
 				.create(agent, managementCanister)
 				.effectiveCanisterId(effectiveCanister)
 				.getProxy(ManagementProxy.class);
+		
+		this.chunkedCodeProxy = ProxyBuilder
+				.create(agent, managementCanister)
+				.effectiveCanisterId(effectiveCanister)
+				.getProxy(ChunkedCodeProxy.class);
+		
+		this.chunkUploadConcurrency = env.getProperty("ic.chunkUpload.concurrency", Integer.class, DEFAULT_CHUNK_UPLOAD_CONCURRENCY);
 
 	}
 
-	@Async
+	ManagementService(ManagementProxy managementProxy, ChunkedCodeProxy chunkedCodeProxy, int chunkUploadConcurrency) {
+		this.managementCanisterId = "aaaaa-aa";
+		this.managementProxy = managementProxy;
+		this.chunkedCodeProxy = chunkedCodeProxy;
+		this.chunkUploadConcurrency = chunkUploadConcurrency;
+	}
+
+	@Autowired(required = false)
+	public void setCallMetrics(CallMetrics callMetrics) {
+		this.callMetrics = callMetrics;
+	}
+	
+	<T> CompletableFuture<T> observe(String method, CompletableFuture<T> future) {
+		CallMetrics callMetrics = this.callMetrics;
+		
+		if (callMetrics == null)
+			return future;
+		
+		// all management canister methods are update calls
+		return callMetrics.observe(this.managementCanisterId, method, false, -1, future);
+	}
+
 	public CompletableFuture<Principal> createCanister(Optional<CanisterSettings> settings) {
 		return this.createCanister(settings, Optional.empty());
 	}
 
 	 
-	@Async
 	public CompletableFuture<Principal> createCanister(Optional<CanisterSettings> settings, Optional<BigInteger> senderCanisterVersion) {
 		CompletableFuture<Principal> response = new CompletableFuture<Principal>(); 
 		
 		CreateCanisterRequest createCanisterRequest = new CreateCanisterRequest();
 		createCanisterRequest.settings = settings;
 		createCanisterRequest.senderCanisterVersion = senderCanisterVersion;
-		managementProxy.createCanister(createCanisterRequest).whenComplete((createCanisterResponse, ex) -> {
+		this.observe("createCanister", managementProxy.createCanister(createCanisterRequest)).whenComplete((createCanisterResponse, ex) -> {
 			if (ex == null) 
 				if (createCanisterResponse != null) 
 						response.complete(createCanisterResponse.canisterId);
@@ -111,26 +180,42 @@ public final class ManagementService {
 
 	@Async
 	public void updateSettings(Principal canisterId, CanisterSettings settings) {
-		this.updateSettings(canisterId, settings, Optional.empty());
+		this.updateSettingsAsync(canisterId, settings);
+	}
+	
+	public CompletableFuture<Void> updateSettingsAsync(Principal canisterId, CanisterSettings settings) {
+		return this.updateSettingsAsync(canisterId, settings, Optional.empty());
 	}
 	
 	@Async
 	public void updateSettings(Principal canisterId, CanisterSettings settings, Optional<BigInteger> senderCanisterVersion) {
+		this.updateSettingsAsync(canisterId, settings, senderCanisterVersion);
+	}
+	
+	public CompletableFuture<Void> updateSettingsAsync(Principal canisterId, CanisterSettings settings, Optional<BigInteger> senderCanisterVersion) {
 		UpdateSettingsRequest updateSettingsRequest = new UpdateSettingsRequest();
 		updateSettingsRequest.canisterId = canisterId;
 		updateSettingsRequest.settings = settings;
 		updateSettingsRequest.senderCanisterVersion = senderCanisterVersion;
 		
-		managementProxy.updateSettings(updateSettingsRequest);
+		return this.observe("updateSettings", managementProxy.updateSettings(updateSettingsRequest));
 	}
 
 	@Async
 	public void installCode(Principal canisterId, Mode mode, byte[] wasmModule, byte[] arg) {
-		this.installCode(canisterId, mode, wasmModule, arg, Optional.empty());
+		this.installCodeAsync(canisterId, mode, wasmModule, arg);
+	}
+	
+	public CompletableFuture<Void> installCodeAsync(Principal canisterId, Mode mode, byte[] wasmModule, byte[] arg) {
+		return this.installCodeAsync(canisterId, mode, wasmModule, arg, Optional.empty());
 	}
 	
 	@Async
 	public void installCode(Principal canisterId, Mode mode, byte[] wasmModule, byte[] arg, Optional<BigInteger> senderCanisterVersion) {
+		this.installCodeAsync(canisterId, mode, wasmModule, arg, senderCanisterVersion);
+	}
+	
+	public CompletableFuture<Void> installCodeAsync(Principal canisterId, Mode mode, byte[] wasmModule, byte[] arg, Optional<BigInteger> senderCanisterVersion) {
 		InstallCodeRequest installCodeRequest = new InstallCodeRequest();
 		installCodeRequest.canisterId = canisterId;
 		installCodeRequest.mode = mode;
@@ -139,70 +224,412 @@ public final class ManagementService {
 		if(installCodeRequest.arg == null)
 			installCodeRequest.arg = ArrayUtils.EMPTY_BYTE_ARRAY;
 		installCodeRequest.senderCanisterVersion = senderCanisterVersion;
-		managementProxy.installCode(installCodeRequest);
+		return this.observe("installCode", managementProxy.installCode(installCodeRequest));
 	}
 
+	@Async
+	public CompletableFuture<Void> installChunkedCode(Principal canisterId, Mode mode, Path wasmModule, byte[] arg) {
+		InputStream inputStream;
+		
+		try {
+			inputStream = Files.newInputStream(wasmModule);
+		} catch (IOException e) {
+			CompletableFuture<Void> response = new CompletableFuture<Void>();
+			
+			response.completeExceptionally(new ManagementError(e));
+			
+			return response;
+		}
+		
+		// chunks are read as uploads complete, keep the file open until then
+		return this.installChunkedCode(canisterId, mode, inputStream, arg, this.chunkUploadConcurrency)
+				.whenComplete((result, ex) -> {
+					try {
+						inputStream.close();
+					} catch (IOException e) {
+						// nothing left to read
+					}
+				});
+	}
+	
+	/*
+	 * Installs a Wasm module through the management canister chunk store. The
+	 * module is read in chunks of at most CHUNK_SIZE bytes as upload permits free
+	 * up, with up to concurrency uploads in flight, chunks already present in the
+	 * canister's chunk store are not uploaded again. A single install_chunked_code
+	 * call completes the installation once all chunks are stored. The stream is
+	 * read until the returned future completes and is not closed.
+	 */
+	@Async
+	public CompletableFuture<Void> installChunkedCode(Principal canisterId, Mode mode, InputStream wasmModule, byte[] arg, int concurrency) {
+		CompletableFuture<Void> response = new CompletableFuture<Void>();
+		
+		this.installChunkedCode(canisterId, mode, ChunkSource.of(wasmModule), arg, concurrency).whenComplete((result, ex) -> {
+			if (ex == null)
+				response.complete(null);
+			else
+				response.completeExceptionally(new ManagementError(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex));
+		});
+		
+		return response;
+	}
+	
+	CompletableFuture<Void> installChunkedCode(Principal canisterId, Mode mode, WasmModule wasmModule, byte[] arg, int concurrency) {
+		return this.installChunkedCode(canisterId, mode, ChunkSource.of(wasmModule), arg, concurrency);
+	}
+	
+	CompletableFuture<Void> installChunkedCode(Principal canisterId, Mode mode, ChunkSource chunkSource, byte[] arg, int concurrency) {
+		if (concurrency <= 0)
+			throw new IllegalArgumentException("Concurrency must be positive");
+		
+		StoredChunksRequest storedChunksRequest = new StoredChunksRequest();
+		storedChunksRequest.canisterId = canisterId;
+		
+		return this.observe("storedChunks", chunkedCodeProxy.storedChunks(storedChunksRequest)).thenCompose(storedChunks -> {
+			Set<ByteBuffer> storedHashes = new HashSet<ByteBuffer>();
+			
+			if (storedChunks != null)
+				for (ChunkHash storedChunk : storedChunks)
+					storedHashes.add(ByteBuffer.wrap(storedChunk.hash));
+			
+			CompletableFuture<Void> uploaded = new CompletableFuture<Void>();
+			
+			// each worker uploads one chunk at a time and reads the next when its upload completes
+			AtomicInteger workers = new AtomicInteger(concurrency);
+			
+			for (int i = 0; i < concurrency; i++)
+				this.uploadNextChunk(canisterId, chunkSource, storedHashes, workers, uploaded);
+			
+			return uploaded;
+		}).thenCompose(ignored -> this.observe("installChunkedCode", chunkedCodeProxy.installChunkedCode(
+				installChunkedCodeRequest(canisterId, mode, chunkSource.getChunkHashes(), chunkSource.getHash(), arg))));
+	}
+	
+	void uploadNextChunk(Principal canisterId, ChunkSource chunkSource, Set<ByteBuffer> storedHashes, AtomicInteger workers, CompletableFuture<Void> uploaded) {
+		if (uploaded.isDone())
+			return;
+		
+		ChunkSource.Chunk chunk;
+		
+		try {
+			synchronized (chunkSource) {
+				// skip chunks already in the chunk store or repeated within the module
+				while ((chunk = chunkSource.next()) != null && !storedHashes.add(ByteBuffer.wrap(chunk.hash.hash)))
+					;
+			}
+		} catch (IOException | RuntimeException e) {
+			uploaded.completeExceptionally(e);
+			return;
+		}
+		
+		if (chunk == null) {
+			if (workers.decrementAndGet() == 0)
+				uploaded.complete(null);
+			
+			return;
+		}
+		
+		UploadChunkRequest uploadChunkRequest = new UploadChunkRequest();
+		uploadChunkRequest.canisterId = canisterId;
+		uploadChunkRequest.chunk = chunk.bytes;
+		
+		this.observe("uploadChunk", chunkedCodeProxy.uploadChunk(uploadChunkRequest)).whenComplete((chunkHash, ex) -> {
+			if (ex != null)
+				uploaded.completeExceptionally(ex);
+			else
+				this.uploadNextChunk(canisterId, chunkSource, storedHashes, workers, uploaded);
+		});
+	}
+	
+	static InstallChunkedCodeRequest installChunkedCodeRequest(Principal canisterId, Mode mode, ChunkHash[] chunkHashes, byte[] wasmModuleHash, byte[] arg) {
+		InstallChunkedCodeRequest installChunkedCodeRequest = new InstallChunkedCodeRequest();
+		installChunkedCodeRequest.mode = mode;
+		installChunkedCodeRequest.targetCanister = canisterId;
+		installChunkedCodeRequest.chunkHashesList = chunkHashes;
+		installChunkedCodeRequest.wasmModuleHash = wasmModuleHash;
+		installChunkedCodeRequest.arg = arg;
+		if(installChunkedCodeRequest.arg == null)
+			installChunkedCodeRequest.arg = ArrayUtils.EMPTY_BYTE_ARRAY;
+		return installChunkedCodeRequest;
+	}
+	
+	CompletableFuture<Void> installCode(Principal canisterId, Mode mode, WasmModule wasmModule, byte[] arg) {
+		if (wasmModule.size() > INSTALL_CODE_LIMIT)
+			return this.installChunkedCode(canisterId, mode, wasmModule, arg, this.chunkUploadConcurrency);
+		
+		InstallCodeRequest installCodeRequest = new InstallCodeRequest();
+		installCodeRequest.canisterId = canisterId;
+		installCodeRequest.mode = mode;
+		installCodeRequest.wasmModule = wasmModule.getBytes();
+		installCodeRequest.arg = arg;
+		if(installCodeRequest.arg == null)
+			installCodeRequest.arg = ArrayUtils.EMPTY_BYTE_ARRAY;
+		installCodeRequest.senderCanisterVersion = Optional.empty();
+		return this.observe("installCode", managementProxy.installCode(installCodeRequest));
+	}
+	
+	/*
+	 * Creates, installs and starts the given canisters with at most parallelism
+	 * pipelines running at once. Specs sharing the same Wasm content share one
+	 * WasmModule, hashed once; modules above INSTALL_CODE_LIMIT are installed in
+	 * chunks. The listener, if any, is notified whenever a canister reaches a
+	 * stage. The result map is keyed by spec name, in spec order, and contains
+	 * one entry per canister whether it succeeded or failed. Spec names must be
+	 * unique, a spec without a name is keyed by its index.
+	 */
+	public CompletableFuture<Map<String, ProvisioningResult>> provisionFleet(List<CanisterSpec> specs, int parallelism, ProvisioningListener listener) {
+		if (parallelism <= 0)
+			throw new IllegalArgumentException("Parallelism must be positive");
+		
+		Set<String> names = new HashSet<String>();
+		Map<ByteBuffer, WasmModule> modulesByContent = new HashMap<ByteBuffer, WasmModule>();
+		List<WasmModule> modules = new ArrayList<WasmModule>(specs.size());
+		
+		for (int i = 0; i < specs.size(); i++) {
+			CanisterSpec spec = specs.get(i);
+			
+			// results are keyed by name, a duplicate would hide one canister's outcome
+			if (!names.add(name(spec, i)))
+				throw new IllegalArgumentException("Duplicate canister spec name " + name(spec, i));
+			
+			WasmModule wasmModule = null;
+			
+			if (spec.wasmModule != null) {
+				// ByteBuffer equality compares content, identical modules map to one WasmModule
+				wasmModule = modulesByContent.get(ByteBuffer.wrap(spec.wasmModule));
+				
+				if (wasmModule == null) {
+					wasmModule = WasmModule.of(spec.wasmModule);
+					modulesByContent.put(ByteBuffer.wrap(spec.wasmModule), wasmModule);
+				}
+			}
+			
+			modules.add(wasmModule);
+		}
+		
+		List<CompletableFuture<ProvisioningResult>> results = new ArrayList<CompletableFuture<ProvisioningResult>>(specs.size());
+		
+		for (int i = 0; i < specs.size(); i++)
+			results.add(new CompletableFuture<ProvisioningResult>());
+		
+		AtomicInteger next = new AtomicInteger();
+		
+		for (int i = 0; i < Math.min(parallelism, specs.size()); i++)
+			this.provisionNext(specs, modules, results, next, listener);
+		
+		return CompletableFuture.allOf(results.toArray(new CompletableFuture[results.size()])).thenApply(ignored -> {
+			Map<String, ProvisioningResult> resultMap = new LinkedHashMap<String, ProvisioningResult>();
+			
+			for (CompletableFuture<ProvisioningResult> result : results) {
+				ProvisioningResult provisioningResult = result.join();
+				
+				resultMap.put(provisioningResult.name, provisioningResult);
+			}
+			
+			return resultMap;
+		});
+	}
+	
+	/*
+	 * Starts the next pending spec. Provisions completing synchronously continue
+	 * in the loop instead of recursing, so long fleets don't grow the stack.
+	 */
+	void provisionNext(List<CanisterSpec> specs, List<WasmModule> modules, List<CompletableFuture<ProvisioningResult>> results, AtomicInteger next, ProvisioningListener listener) {
+		int index;
+		
+		while ((index = next.getAndIncrement()) < specs.size()) {
+			CanisterSpec spec = specs.get(index);
+			String name = name(spec, index);
+			CompletableFuture<ProvisioningResult> result = results.get(index);
+			
+			CompletableFuture<ProvisioningResult> provisioned;
+			
+			try {
+				provisioned = this.provision(name, spec, modules.get(index), listener);
+			} catch (RuntimeException e) {
+				provisioned = new CompletableFuture<ProvisioningResult>();
+				provisioned.completeExceptionally(e);
+			}
+			
+			if (!provisioned.isDone()) {
+				provisioned.whenComplete((value, ex) -> {
+					complete(result, name, value, ex);
+					
+					this.provisionNext(specs, modules, results, next, listener);
+				});
+				
+				return;
+			}
+			
+			provisioned.whenComplete((value, ex) -> complete(result, name, value, ex));
+		}
+	}
+	
+	static String name(CanisterSpec spec, int index) {
+		return spec.name == null ? String.valueOf(index) : spec.name;
+	}
+	
+	// every spec gets a result, a failure escaping provision is reported as FAILED
+	static void complete(CompletableFuture<ProvisioningResult> result, String name, ProvisioningResult value, Throwable ex) {
+		if (ex == null && value != null) {
+			result.complete(value);
+			
+			return;
+		}
+		
+		if (ex instanceof CompletionException && ex.getCause() != null)
+			ex = ex.getCause();
+		
+		result.complete(new ProvisioningResult(name, null, ProvisioningStage.FAILED, ProvisioningStage.PENDING,
+				ex == null ? new IllegalStateException("No provisioning result for " + name) : ex));
+	}
+	
+	CompletableFuture<ProvisioningResult> provision(String name, CanisterSpec spec, WasmModule wasmModule, ProvisioningListener listener) {
+		AtomicReference<Principal> canisterId = new AtomicReference<Principal>();
+		AtomicReference<ProvisioningStage> stage = new AtomicReference<ProvisioningStage>(ProvisioningStage.PENDING);
+		
+		CompletableFuture<Principal> created;
+		
+		try {
+			if (spec.cycles.isPresent())
+				created = this.provisionalCreateCanisterWithCycles(spec.settings, spec.cycles);
+			else
+				created = this.createCanister(spec.settings);
+		} catch (Exception e) {
+			created = new CompletableFuture<Principal>();
+			created.completeExceptionally(e);
+		}
+		
+		return created.thenCompose(principal -> {
+			canisterId.set(principal);
+			progress(listener, name, stage, ProvisioningStage.CREATED, principal);
+			
+			if (wasmModule == null)
+				return CompletableFuture.<Void>completedFuture(null);
+			
+			return this.installCode(principal, spec.mode, wasmModule, spec.arg).<Void>thenApply(ignored -> {
+				progress(listener, name, stage, ProvisioningStage.CODE_INSTALLED, principal);
+				
+				return null;
+			});
+		}).thenCompose(ignored -> this.startCanisterAsync(canisterId.get())).handle((ignored, ex) -> {
+			if (ex == null) {
+				progress(listener, name, stage, ProvisioningStage.STARTED, canisterId.get());
+				
+				return new ProvisioningResult(name, canisterId.get(), ProvisioningStage.STARTED, ProvisioningStage.STARTED, null);
+			}
+			
+			if (ex instanceof CompletionException && ex.getCause() != null)
+				ex = ex.getCause();
+			
+			ProvisioningStage lastStage = stage.get();
+			
+			notifyListener(listener, name, ProvisioningStage.FAILED, canisterId.get());
+			
+			return new ProvisioningResult(name, canisterId.get(), ProvisioningStage.FAILED, lastStage, ex);
+		});
+	}
+	
+	static void progress(ProvisioningListener listener, String name, AtomicReference<ProvisioningStage> stage, ProvisioningStage newStage, Principal canisterId) {
+		stage.set(newStage);
+		
+		notifyListener(listener, name, newStage, canisterId);
+	}
+	
+	// a failing listener must not fail the canister it is notified about
+	static void notifyListener(ProvisioningListener listener, String name, ProvisioningStage stage, Principal canisterId) {
+		if (listener == null)
+			return;
+		
+		try {
+			listener.onProgress(name, stage, canisterId);
+		} catch (RuntimeException e) {
+			LOG.warn("Provisioning listener failed for " + name + " at " + stage, e);
+		}
+	}
+	
 	@Async
 	public void uninstallCode(Principal canisterId) {
-		this.uninstallCode(canisterId, Optional.empty());
+		this.uninstallCodeAsync(canisterId);
+	}
+	
+	public CompletableFuture<Void> uninstallCodeAsync(Principal canisterId) {
+		return this.uninstallCodeAsync(canisterId, Optional.empty());
 	}
 	
 	@Async
 	public void uninstallCode(Principal canisterId, Optional<BigInteger> senderCanisterVersion) {
+		this.uninstallCodeAsync(canisterId, senderCanisterVersion);
+	}
+	
+	public CompletableFuture<Void> uninstallCodeAsync(Principal canisterId, Optional<BigInteger> senderCanisterVersion) {
 		UninstallCodeRequest uninstallCodeRequest = new UninstallCodeRequest();
 		uninstallCodeRequest.canisterId = canisterId;
 		uninstallCodeRequest.senderCanisterVersion = senderCanisterVersion;
-		managementProxy.uninstallCode(uninstallCodeRequest);
+		return this.observe("uninstallCode", managementProxy.uninstallCode(uninstallCodeRequest));
 	}	
 
 	@Async
 	public void deleteCanister(Principal canisterId) {
+		this.deleteCanisterAsync(canisterId);
+	}
+	
+	public CompletableFuture<Void> deleteCanisterAsync(Principal canisterId) {
 		DeleteCanisterRequest deleteCanisterRequest = new DeleteCanisterRequest();
 		deleteCanisterRequest.canisterId = canisterId;
-		managementProxy.deleteCanister(deleteCanisterRequest);
+		return this.observe("deleteCanister", managementProxy.deleteCanister(deleteCanisterRequest));
 	}
 	
 	@Async
 	public void startCanister(Principal canisterId) {
+		this.startCanisterAsync(canisterId);
+	}
+	
+	public CompletableFuture<Void> startCanisterAsync(Principal canisterId) {
 		StartCanisterRequest startCanisterRequest = new StartCanisterRequest();
 		startCanisterRequest.canisterId = canisterId;
-		managementProxy.startCanister(startCanisterRequest);
+		return this.observe("startCanister", managementProxy.startCanister(startCanisterRequest));
 	}
 	
 	@Async
 	public void stopCanister(Principal canisterId) {
+		this.stopCanisterAsync(canisterId);
+	}
+	
+	public CompletableFuture<Void> stopCanisterAsync(Principal canisterId) {
 		StopCanisterRequest stopCanisterRequest = new StopCanisterRequest();
 		stopCanisterRequest.canisterId = canisterId;
-		managementProxy.stopCanister(stopCanisterRequest);
+		return this.observe("stopCanister", managementProxy.stopCanister(stopCanisterRequest));
 	}
 	
 	@Async
 	public void depositCycles(Principal canisterId) {
+		this.depositCyclesAsync(canisterId);
+	}
+	
+	public CompletableFuture<Void> depositCyclesAsync(Principal canisterId) {
 		DepositCyclesRequest depositCyclesRequest = new DepositCyclesRequest();
 		depositCyclesRequest.canisterId = canisterId;
-		managementProxy.depositCycles(depositCyclesRequest);
+		return this.observe("depositCycles", managementProxy.depositCycles(depositCyclesRequest));
 	}	
 	
-	@Async
 	public CompletableFuture<CanisterStatusResponse> canisterStatus(Principal canisterId) {
 		CanisterStatusRequest canisterStatusRequest = new CanisterStatusRequest();
 		canisterStatusRequest.canisterId = canisterId;
-		return managementProxy.canisterStatus(canisterStatusRequest);
+		return this.observe("canisterStatus", managementProxy.canisterStatus(canisterStatusRequest));
 	}	
 	
-	@Async
 	public CompletableFuture<byte[]> rawRand() {
-		return managementProxy.rawRand();
+		return this.observe("rawRand", managementProxy.rawRand());
 	}	
 	
-	@Async
 	public CompletableFuture<Principal> provisionalCreateCanisterWithCycles(Optional<CanisterSettings> settings, Optional<BigInteger> amount) {
 		CompletableFuture<Principal> response = new CompletableFuture<Principal>(); 
 		
 		ProvisionalCreateCanisterWithCyclesRequest provisionalCreateCanisterWithCyclesRequest = new ProvisionalCreateCanisterWithCyclesRequest();
 		provisionalCreateCanisterWithCyclesRequest.settings = settings;
 		provisionalCreateCanisterWithCyclesRequest.amount = amount;
-		managementProxy.provisionalCreateCanisterWithCycles(provisionalCreateCanisterWithCyclesRequest).whenComplete((createCanisterResponse, ex) -> {
+		this.observe("provisionalCreateCanisterWithCycles", managementProxy.provisionalCreateCanisterWithCycles(provisionalCreateCanisterWithCyclesRequest)).whenComplete((createCanisterResponse, ex) -> {
 			if (ex == null) 
 				if (createCanisterResponse != null) 
 						response.complete(createCanisterResponse.canisterId);
@@ -219,9 +646,13 @@ public final class ManagementService {
 	
 	@Async
 	public void provisionalTopUpCanister(Principal canisterId, BigInteger amount) {
+		this.provisionalTopUpCanisterAsync(canisterId, amount);
+	}
+	
+	public CompletableFuture<Void> provisionalTopUpCanisterAsync(Principal canisterId, BigInteger amount) {
 		ProvisionalTopUpCanisterRequest provisionalTopUpCanisterRequest = new ProvisionalTopUpCanisterRequest();
 		provisionalTopUpCanisterRequest.canisterId = canisterId;
 		provisionalTopUpCanisterRequest.amount = amount;
-		managementProxy.provisionalTopUpCanister(provisionalTopUpCanisterRequest);
+		return this.observe("provisionalTopUpCanister", managementProxy.provisionalTopUpCanister(provisionalTopUpCanisterRequest));
 	}	
 }
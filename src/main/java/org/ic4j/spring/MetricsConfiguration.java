@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.spring;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.util.ClassUtils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Import to publish canister call metrics to the application's MeterRegistry.
+ * Nothing is registered when Micrometer is not on the classpath or no
+ * MeterRegistry bean exists, in which case services run uninstrumented.
+ */
+@Configuration
+@Conditional(MetricsConfiguration.OnMicrometer.class)
+public class MetricsConfiguration {
+
+	@Bean
+	public CallMetrics callMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+		MeterRegistry registry = meterRegistry.getIfAvailable();
+
+		if (registry == null)
+			return null;
+
+		return new MicrometerCallMetrics(registry);
+	}
+
+	static final class OnMicrometer implements Condition {
+		@Override
+		public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+			return ClassUtils.isPresent("io.micrometer.core.instrument.MeterRegistry", context.getClassLoader());
+		}
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.spring;
+
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.ic4j.agent.AgentError;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/*
+ * CallMetrics backed by a Micrometer MeterRegistry.
+ * 
+ * ic4j.call timer (canister, method, type, outcome)
+ * ic4j.call.errors counter (canister, method, type, code), code is the replica
+ * reject code when the canister rejected the call, the AgentError code or the
+ * exception class otherwise
+ * ic4j.call.request.bytes and ic4j.call.response.bytes summaries (canister, method, type)
+ * ic4j.call.inflight gauge (canister, method, type)
+ * ic4j.pool.hits and ic4j.pool.misses counters, ic4j.pool.hit.ratio gauge (pool)
+ */
+public final class MicrometerCallMetrics implements CallMetrics {
+	static final Pattern REJECT_CODE = Pattern.compile("reject[ _]code\\W*(\\d+)", Pattern.CASE_INSENSITIVE);
+
+	final MeterRegistry registry;
+
+	// meters are registered once per canister method, record only looks them up
+	final ConcurrentMap<MeterKey, Meters> meters = new ConcurrentHashMap<MeterKey, Meters>();
+
+	public MicrometerCallMetrics(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public void inFlight(String canister, String method, boolean query, int delta) {
+		this.meters(canister, method, query).inFlight.addAndGet(delta);
+	}
+
+	@Override
+	public void record(String canister, String method, boolean query, long durationNanos, int requestBytes,
+			int responseBytes, Throwable error) {
+		Meters meters = this.meters(canister, method, query);
+
+		meters.timer(error == null).record(durationNanos, TimeUnit.NANOSECONDS);
+
+		if (requestBytes >= 0)
+			meters.requestBytes().record(requestBytes);
+
+		if (responseBytes >= 0)
+			meters.responseBytes().record(responseBytes);
+
+		if (error != null)
+			meters.errors(errorCode(error)).increment();
+	}
+
+	Meters meters(String canister, String method, boolean query) {
+		MeterKey key = new MeterKey(canister, method, query);
+
+		Meters meters = this.meters.get(key);
+
+		// computeIfAbsent so the inflight gauge is registered with the counter that is kept
+		if (meters == null)
+			meters = this.meters.computeIfAbsent(key, ignored -> new Meters(this.registry, tags(canister, method, query)));
+
+		return meters;
+	}
+
+	// the registry only keeps a weak reference to state, the owner of the pool keeps it alive
+	@Override
+	public <T> void bindPool(String pool, T state, ToLongFunction<T> hits, ToLongFunction<T> misses) {
+		Tags tags = Tags.of("pool", pool);
+
+		FunctionCounter.builder("ic4j.pool.hits", state, value -> hits.applyAsLong(value)).tags(tags)
+				.register(this.registry);
+
+		FunctionCounter.builder("ic4j.pool.misses", state, value -> misses.applyAsLong(value)).tags(tags)
+				.register(this.registry);
+
+		Gauge.builder("ic4j.pool.hit.ratio", state, value -> {
+			long hitCount = hits.applyAsLong(value);
+			long total = hitCount + misses.applyAsLong(value);
+
+			return total == 0 ? 0.0 : (double) hitCount / total;
+		}).tags(tags).register(this.registry);
+	}
+
+	static final class MeterKey {
+		final String canister;
+
+		final String method;
+
+		final boolean query;
+
+		MeterKey(String canister, String method, boolean query) {
+			this.canister = canister;
+			this.method = method;
+			this.query = query;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof MeterKey))
+				return false;
+
+			MeterKey other = (MeterKey) obj;
+
+			return this.query == other.query && Objects.equals(this.canister, other.canister)
+					&& Objects.equals(this.method, other.method);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.canister, this.method, this.query);
+		}
+	}
+
+	/*
+	 * Meters of one canister method, the timers and summaries are registered on
+	 * first use so methods without errors or payload sizes publish no empty series
+	 */
+	static final class Meters {
+		final MeterRegistry registry;
+
+		final Tags tags;
+
+		final AtomicInteger inFlight;
+
+		final ConcurrentMap<String, Counter> errors = new ConcurrentHashMap<String, Counter>();
+
+		volatile Timer success;
+
+		volatile Timer failure;
+
+		volatile DistributionSummary requestBytes;
+
+		volatile DistributionSummary responseBytes;
+
+		Meters(MeterRegistry registry, Tags tags) {
+			this.registry = registry;
+			this.tags = tags;
+			this.inFlight = registry.gauge("ic4j.call.inflight", tags, new AtomicInteger());
+		}
+
+		// a race registers the same meter twice, the registry returns the existing one
+		Timer timer(boolean succeeded) {
+			Timer timer = succeeded ? this.success : this.failure;
+
+			if (timer == null) {
+				timer = Timer.builder("ic4j.call").tags(this.tags).tag("outcome", succeeded ? "success" : "error")
+						.publishPercentileHistogram().register(this.registry);
+
+				if (succeeded)
+					this.success = timer;
+				else
+					this.failure = timer;
+			}
+
+			return timer;
+		}
+
+		DistributionSummary requestBytes() {
+			DistributionSummary summary = this.requestBytes;
+
+			if (summary == null)
+				this.requestBytes = summary = DistributionSummary.builder("ic4j.call.request.bytes").baseUnit("bytes")
+						.tags(this.tags).register(this.registry);
+
+			return summary;
+		}
+
+		DistributionSummary responseBytes() {
+			DistributionSummary summary = this.responseBytes;
+
+			if (summary == null)
+				this.responseBytes = summary = DistributionSummary.builder("ic4j.call.response.bytes").baseUnit("bytes")
+						.tags(this.tags).register(this.registry);
+
+			return summary;
+		}
+
+		Counter errors(String code) {
+			Counter counter = this.errors.get(code);
+
+			if (counter == null)
+				counter = this.errors.computeIfAbsent(code,
+						ignored -> this.registry.counter("ic4j.call.errors", this.tags.and("code", code)));
+
+			return counter;
+		}
+	}
+
+	static Tags tags(String canister, String method, boolean query) {
+		return Tags.of("canister", canister, "method", method, "type", query ? "query" : "update");
+	}
+
+	static String errorCode(Throwable error) {
+		Throwable cause = error;
+
+		while ((cause instanceof CompletionException || cause instanceof ExecutionException
+				|| (cause instanceof RuntimeException && cause.getClass() == RuntimeException.class))
+				&& cause.getCause() != null)
+			cause = cause.getCause();
+
+		if (cause instanceof AgentError) {
+			// the reject code is only carried in the message of replica errors
+			String message = cause.getMessage();
+
+			Matcher matcher = message == null ? null : REJECT_CODE.matcher(message);
+
+			if (matcher != null && matcher.find())
+				return matcher.group(1);
+
+			if (((AgentError) cause).getCode() != null)
+				return ((AgentError) cause).getCode().name();
+		}
+
+		return cause.getClass().getSimpleName();
+	}
+}
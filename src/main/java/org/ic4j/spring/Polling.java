@@ -0,0 +1,42 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/*
+ * Polls the request status of update methods called through Service with
+ * exponential backoff instead of the agent's fixed Waiter interval. Placed on
+ * the canister interface it applies to all update methods, placed on a method
+ * it overrides the interface settings. Values can be overridden with the
+ * ic.polling.<interface>.<method>.initialDelay, .multiplier, .maxDelay and
+ * .timeout properties, where interface is the simple name of the canister
+ * interface. Times are in milliseconds.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE, ElementType.METHOD })
+public @interface Polling {
+	long initialDelay() default PollingStrategy.DEFAULT_INITIAL_DELAY;
+
+	double multiplier() default PollingStrategy.DEFAULT_MULTIPLIER;
+
+	long maxDelay() default PollingStrategy.DEFAULT_MAX_DELAY;
+
+	long timeout() default PollingStrategy.DEFAULT_TIMEOUT;
+}
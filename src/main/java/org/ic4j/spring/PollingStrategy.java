@@ -0,0 +1,88 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+/*
+ * How often the request status of an update call is polled until the replica
+ * has certified the reply: an initial delay, then delays growing by the
+ * multiplier up to the cap, until the timeout. All times are in milliseconds.
+ */
+public final class PollingStrategy {
+	public static final long DEFAULT_INITIAL_DELAY = 200;
+	public static final double DEFAULT_MULTIPLIER = 2.0;
+	public static final long DEFAULT_MAX_DELAY = 2000;
+	public static final long DEFAULT_TIMEOUT = 60000;
+
+	final long initialDelay;
+
+	final double multiplier;
+
+	final long maxDelay;
+
+	final long timeout;
+
+	PollingStrategy(long initialDelay, double multiplier, long maxDelay, long timeout) {
+		if (initialDelay < 0)
+			throw new IllegalArgumentException("Initial delay must not be negative");
+
+		if (multiplier < 1)
+			throw new IllegalArgumentException("Multiplier must be at least 1");
+
+		if (maxDelay < initialDelay)
+			throw new IllegalArgumentException("Maximum delay must not be below the initial delay");
+
+		if (timeout <= 0)
+			throw new IllegalArgumentException("Timeout must be positive");
+
+		this.initialDelay = initialDelay;
+		this.multiplier = multiplier;
+		this.maxDelay = maxDelay;
+		this.timeout = timeout;
+	}
+
+	public static PollingStrategy fixed(long delay, long timeout) {
+		return new PollingStrategy(delay, 1, delay, timeout);
+	}
+
+	public static PollingStrategy exponential(long initialDelay, double multiplier, long maxDelay, long timeout) {
+		return new PollingStrategy(initialDelay, multiplier, maxDelay, timeout);
+	}
+
+	/*
+	 * Delay before the given poll, starting with attempt 0
+	 */
+	public long delay(int attempt) {
+		double delay = this.initialDelay * Math.pow(this.multiplier, attempt);
+
+		return (long) Math.min(delay, this.maxDelay);
+	}
+
+	public long getInitialDelay() {
+		return this.initialDelay;
+	}
+
+	public double getMultiplier() {
+		return this.multiplier;
+	}
+
+	public long getMaxDelay() {
+		return this.maxDelay;
+	}
+
+	public long getTimeout() {
+		return this.timeout;
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.awt.image.BufferedImage;
+
+import org.ic4j.internetidentity.Challenge;
+
+/*
+ * CAPTCHA challenge taken from a ChallengePool, with its image already decoded
+ * and re-encoded as PNG bytes ready to be served
+ */
+public final class PreparedChallenge {
+	final Challenge challenge;
+
+	final BufferedImage image;
+
+	final byte[] png;
+
+	final long expiresAt;
+
+	PreparedChallenge(Challenge challenge, BufferedImage image, byte[] png, long expiresAt) {
+		this.challenge = challenge;
+		this.image = image;
+		this.png = png;
+		this.expiresAt = expiresAt;
+	}
+
+	public Challenge getChallenge() {
+		return this.challenge;
+	}
+
+	public BufferedImage getImage() {
+		return this.image;
+	}
+
+	public byte[] getPng() {
+		return this.png;
+	}
+
+	/*
+	 * Time in milliseconds after which the pool no longer hands out this challenge
+	 */
+	public long getExpiresAt() {
+		return this.expiresAt;
+	}
+
+	boolean isExpired(long now) {
+		return this.expiresAt <= now;
+	}
+}
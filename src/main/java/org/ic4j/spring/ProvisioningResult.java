@@ -0,0 +1,48 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import org.ic4j.types.Principal;
+
+/*
+ * Outcome of provisioning one canister. For failed canisters stage is FAILED,
+ * lastStage tells how far the pipeline got and canisterId is set if the
+ * canister was created.
+ */
+public final class ProvisioningResult {
+	public final String name;
+
+	public final Principal canisterId;
+
+	public final ProvisioningStage stage;
+
+	public final ProvisioningStage lastStage;
+
+	public final Throwable error;
+
+	ProvisioningResult(String name, Principal canisterId, ProvisioningStage stage, ProvisioningStage lastStage,
+			Throwable error) {
+		this.name = name;
+		this.canisterId = canisterId;
+		this.stage = stage;
+		this.lastStage = lastStage;
+		this.error = error;
+	}
+
+	public boolean isSuccess() {
+		return this.error == null;
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.spring;
+
+import java.lang.reflect.Array;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * TTL bounded LRU cache of decoded query results, one region per method.
+ * Callers take the generation before sending a query and pass it to put, so a
+ * result that was in flight while the cache was invalidated is not stored.
+ * Array results are copied when stored and on every hit, their elements and
+ * all other results are shared between callers and must not be modified.
+ */
+public final class QueryResultCache {
+	public static final Object NOT_FOUND = new Object();
+
+	final Map<String, Region> regions = new ConcurrentHashMap<String, Region>();
+
+	final AtomicLong hits = new AtomicLong();
+
+	final AtomicLong misses = new AtomicLong();
+
+	final AtomicLong generation = new AtomicLong();
+
+	public void configure(String methodName, long ttl, int maxSize) {
+		if (ttl > 0 && maxSize > 0)
+			this.regions.put(methodName, new Region(ttl, maxSize));
+	}
+
+	public boolean isCached(String methodName) {
+		return this.regions.containsKey(methodName);
+	}
+
+	public Object get(CallKey key) {
+		Region region = this.regions.get(key.methodName);
+
+		Object value = region == null ? NOT_FOUND : region.get(key);
+
+		if (value == NOT_FOUND) {
+			this.misses.incrementAndGet();
+
+			return NOT_FOUND;
+		}
+
+		this.hits.incrementAndGet();
+
+		return copy(value);
+	}
+
+	public long generation() {
+		return this.generation.get();
+	}
+
+	/*
+	 * Stores the value unless the cache was invalidated since generation was taken
+	 */
+	public void put(CallKey key, Object value, long generation) {
+		Region region = this.regions.get(key.methodName);
+
+		if (region != null)
+			region.put(key, copy(value), generation, this.generation);
+	}
+
+	public void invalidateAll() {
+		this.generation.incrementAndGet();
+
+		for (Region region : this.regions.values())
+			region.clear();
+	}
+
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	public boolean isEmpty() {
+		return this.regions.isEmpty();
+	}
+
+	/*
+	 * Shallow copy of an array result, so a caller sorting or filling its
+	 * array in place does not change what other callers get
+	 */
+	static Object copy(Object value) {
+		if (value == null || !value.getClass().isArray())
+			return value;
+
+		int length = Array.getLength(value);
+
+		Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+		System.arraycopy(value, 0, copy, 0, length);
+
+		return copy;
+	}
+
+	static final class Entry {
+		final Object value;
+
+		final long expiresAt;
+
+		Entry(Object value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	static final class Region {
+		final long ttl;
+
+		final LinkedHashMap<CallKey, Entry> entries;
+
+		Region(long ttl, int maxSize) {
+			this.ttl = ttl;
+			this.entries = new LinkedHashMap<CallKey, Entry>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<CallKey, Entry> eldest) {
+					return size() > maxSize;
+				}
+			};
+		}
+
+		synchronized Object get(CallKey key) {
+			Entry entry = this.entries.get(key);
+
+			if (entry == null)
+				return NOT_FOUND;
+
+			if (entry.expiresAt <= System.currentTimeMillis()) {
+				this.entries.remove(key);
+				return NOT_FOUND;
+			}
+
+			return entry.value;
+		}
+
+		// checked under the region lock, invalidateAll clears the region after advancing the generation
+		synchronized void put(CallKey key, Object value, long generation, AtomicLong currentGeneration) {
+			if (generation == currentGeneration.get())
+				this.entries.put(key, new Entry(value, System.currentTimeMillis() + this.ttl));
+		}
+
+		synchronized void clear() {
+			this.entries.clear();
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.security.KeyPair;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.ic4j.internetidentity.AddTentativeDeviceResponse;
+import org.ic4j.internetidentity.Algorithm;
+import org.ic4j.internetidentity.AnchorCredentials;
+import org.ic4j.internetidentity.Challenge;
+import org.ic4j.internetidentity.ChallengeResult;
+import org.ic4j.internetidentity.DeviceData;
+import org.ic4j.internetidentity.GetDelegationResponse;
+import org.ic4j.internetidentity.IdentityAnchorInfo;
+import org.ic4j.internetidentity.PrepareDelegationResponse;
+import org.ic4j.internetidentity.RegisterResponse;
+import org.ic4j.internetidentity.VerifyTentativeDeviceResponse;
+import org.ic4j.types.Principal;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/*
+ * Project Reactor view of the Internet Identity flows. Update calls complete
+ * from the agent's asynchronous transport. The query methods the underlying
+ * proxy only offers synchronously (lookup, credentials, delegation, principal)
+ * and session key generation run on the bounded elastic scheduler so they never
+ * block an event loop.
+ */
+public final class ReactiveInternetIdentityService {
+	final InternetIdentityService internetIdentityService;
+
+	public ReactiveInternetIdentityService(InternetIdentityService internetIdentityService) {
+		if (internetIdentityService == null)
+			throw new IllegalArgumentException("Internet Identity service is required");
+
+		this.internetIdentityService = internetIdentityService;
+	}
+
+	public Mono<KeyPair> generateSessionKey(Algorithm algorithm) {
+		return blocking(() -> this.internetIdentityService.generateSessionKey(algorithm));
+	}
+
+	public Mono<Challenge> createChallenge() {
+		return defer(() -> this.internetIdentityService.createChallenge());
+	}
+
+	public Mono<PreparedChallenge> takeChallenge() {
+		return defer(() -> this.internetIdentityService.takeChallenge());
+	}
+
+	public Mono<RegisterResponse> register(DeviceData deviceData, ChallengeResult challengeResult) {
+		return defer(() -> this.internetIdentityService.register(deviceData, challengeResult));
+	}
+
+	public Mono<PrepareDelegationResponse> prepareDelegation(Long userNumber, String frontendHostname, byte[] sessionKey,
+			Optional<Long> maxTimeToLive) {
+		return defer(() -> this.internetIdentityService.prepareDelegation(userNumber,
+				frontendHostname, sessionKey, maxTimeToLive));
+	}
+
+	public Mono<GetDelegationResponse> prepareAndGetDelegation(Long userNumber, String frontendHostname,
+			byte[] sessionKey, Optional<Long> maxTimeToLive) {
+		return defer(() -> this.internetIdentityService.prepareAndGetDelegation(userNumber,
+				frontendHostname, sessionKey, maxTimeToLive));
+	}
+
+	public Mono<GetDelegationResponse> getDelegation(Long userNumber, String frontendHostname, byte[] sessionKey,
+			Long timestamp) {
+		return defer(
+				() -> this.internetIdentityService.getDelegationAsync(userNumber, frontendHostname, sessionKey, timestamp));
+	}
+
+	public Mono<DeviceData[]> lookup(Long userNumber) {
+		return blocking(() -> this.internetIdentityService.lookup(userNumber));
+	}
+
+	public Mono<AnchorCredentials> getAnchorCredentials(Long userNumber) {
+		return blocking(() -> this.internetIdentityService.getAnchorCredentials(userNumber));
+	}
+
+	public Mono<Principal> getPrincipal(Long userNumber, String frontendHostname) {
+		return blocking(() -> this.internetIdentityService.getPrincipal(userNumber, frontendHostname));
+	}
+
+	public Mono<IdentityAnchorInfo> getAnchorInfo(Long userNumber) {
+		return defer(() -> this.internetIdentityService.getAnchorInfo(userNumber));
+	}
+
+	public Mono<Long> enterDeviceRegistrationMode(Long userNumber) {
+		return defer(() -> this.internetIdentityService.enterDeviceRegistrationMode(userNumber));
+	}
+
+	public Mono<Void> exitDeviceRegistrationMode(Long userNumber) {
+		return defer(() -> this.internetIdentityService.exitDeviceRegistrationModeAsync(userNumber));
+	}
+
+	public Mono<AddTentativeDeviceResponse> addTentativeDevice(Long userNumber, DeviceData deviceData) {
+		return defer(() -> this.internetIdentityService.addTentativeDevice(userNumber, deviceData));
+	}
+
+	public Mono<VerifyTentativeDeviceResponse> verifyTentativeDevice(Long userNumber, String verificationCode) {
+		return defer(() -> this.internetIdentityService.verifyTentativeDevice(userNumber, verificationCode));
+	}
+
+	public Mono<Void> add(Long userNumber, DeviceData deviceData) {
+		return defer(() -> this.internetIdentityService.addAsync(userNumber, deviceData));
+	}
+
+	public Mono<Void> remove(Long userNumber, byte[] deviceKey) {
+		return defer(() -> this.internetIdentityService.removeAsync(userNumber, deviceKey));
+	}
+
+	public Mono<Void> update(Long userNumber, byte[] deviceKey, DeviceData deviceData) {
+		return defer(() -> this.internetIdentityService.updateAsync(userNumber, deviceKey, deviceData));
+	}
+
+	public InternetIdentityService getInternetIdentityService() {
+		return this.internetIdentityService;
+	}
+
+	static <T> Mono<T> defer(Supplier<CompletableFuture<T>> supplier) {
+		return Mono.defer(() -> Mono.fromFuture(supplier.get()));
+	}
+
+	static <T> Mono<T> blocking(Callable<T> callable) {
+		return Mono.fromCallable(callable).subscribeOn(Schedulers.boundedElastic());
+	}
+}
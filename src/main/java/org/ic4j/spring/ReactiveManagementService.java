@@ -0,0 +1,144 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.ic4j.management.CanisterSettings;
+import org.ic4j.management.CanisterStatusResponse;
+import org.ic4j.management.Mode;
+import org.ic4j.types.Principal;
+import org.reactivestreams.Publisher;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/*
+ * Project Reactor view of the ManagementService lifecycle operations. Every
+ * Mono is cold, the management call is made on subscription and completes from
+ * the agent's asynchronous transport without blocking a thread. Only
+ * installChunkedCode from a Path reads the file, it subscribes on the
+ * boundedElastic scheduler.
+ */
+public final class ReactiveManagementService {
+	final ManagementService managementService;
+
+	public ReactiveManagementService(ManagementService managementService) {
+		if (managementService == null)
+			throw new IllegalArgumentException("Management service is required");
+
+		this.managementService = managementService;
+	}
+
+	public Mono<Principal> createCanister(Optional<CanisterSettings> settings) {
+		return defer(() -> this.managementService.createCanister(settings));
+	}
+
+	public Mono<Principal> provisionalCreateCanisterWithCycles(Optional<CanisterSettings> settings, Optional<BigInteger> amount) {
+		return defer(() -> this.managementService.provisionalCreateCanisterWithCycles(settings, amount));
+	}
+
+	public Mono<Void> updateSettings(Principal canisterId, CanisterSettings settings) {
+		return defer(() -> this.managementService.updateSettingsAsync(canisterId, settings));
+	}
+
+	public Mono<Void> installCode(Principal canisterId, Mode mode, byte[] wasmModule, byte[] arg) {
+		return defer(() -> this.managementService.installCodeAsync(canisterId, mode, wasmModule, arg));
+	}
+
+	public Mono<Void> installChunkedCode(Principal canisterId, Mode mode, Path wasmModule, byte[] arg) {
+		return defer(() -> this.managementService.installChunkedCode(canisterId, mode, wasmModule, arg))
+				.subscribeOn(Schedulers.boundedElastic());
+	}
+
+	public Mono<Void> uninstallCode(Principal canisterId) {
+		return defer(() -> this.managementService.uninstallCodeAsync(canisterId));
+	}
+
+	public Mono<Void> startCanister(Principal canisterId) {
+		return defer(() -> this.managementService.startCanisterAsync(canisterId));
+	}
+
+	public Mono<Void> stopCanister(Principal canisterId) {
+		return defer(() -> this.managementService.stopCanisterAsync(canisterId));
+	}
+
+	public Mono<Void> deleteCanister(Principal canisterId) {
+		return defer(() -> this.managementService.deleteCanisterAsync(canisterId));
+	}
+
+	public Mono<Void> depositCycles(Principal canisterId) {
+		return defer(() -> this.managementService.depositCyclesAsync(canisterId));
+	}
+
+	public Mono<Void> provisionalTopUpCanister(Principal canisterId, BigInteger amount) {
+		return defer(() -> this.managementService.provisionalTopUpCanisterAsync(canisterId, amount));
+	}
+
+	public Mono<CanisterStatusResponse> canisterStatus(Principal canisterId) {
+		return defer(() -> this.managementService.canisterStatus(canisterId));
+	}
+
+	public Mono<byte[]> rawRand() {
+		return defer(() -> this.managementService.rawRand());
+	}
+
+	/*
+	 * Creates, installs and starts a canister per spec with at most concurrency
+	 * pipelines running. Specs are requested from upstream only as pipelines
+	 * finish, results are emitted in completion order and failures are reported
+	 * as FAILED results. Specs with identical Wasm content share one WasmModule.
+	 */
+	public Flux<ProvisioningResult> provision(Publisher<CanisterSpec> specs, int concurrency, ProvisioningListener listener) {
+		if (concurrency <= 0)
+			throw new IllegalArgumentException("Concurrency must be positive");
+
+		return Flux.defer(() -> {
+			Map<ByteBuffer, WasmModule> modulesByContent = new ConcurrentHashMap<ByteBuffer, WasmModule>();
+
+			return Flux.from(specs).index().flatMap(indexed -> {
+				CanisterSpec spec = indexed.getT2();
+				String name = spec.name == null ? String.valueOf(indexed.getT1()) : spec.name;
+
+				WasmModule wasmModule = null;
+
+				if (spec.wasmModule != null)
+					wasmModule = modulesByContent.computeIfAbsent(ByteBuffer.wrap(spec.wasmModule),
+							content -> WasmModule.of(spec.wasmModule));
+
+				WasmModule module = wasmModule;
+
+				return defer(() -> this.managementService.provision(name, spec, module, listener));
+			}, concurrency, 1);
+		});
+	}
+
+	public ManagementService getManagementService() {
+		return this.managementService;
+	}
+
+	static <T> Mono<T> defer(Supplier<CompletableFuture<T>> supplier) {
+		return Mono.defer(() -> Mono.fromFuture(supplier.get()));
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import org.reactivestreams.Publisher;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/*
+ * Project Reactor view of a canister Service. Calls go through callAsync, so a
+ * subscription never blocks a thread: queries and updates are dispatched on
+ * the agent's asynchronous transport and the Mono completes from its callback.
+ * Each subscription issues a new call, cancelling the subscription cancels the
+ * pending future. The first call on a lazily initialized service builds the
+ * agent, which fetches the root key, so that call subscribes on the
+ * boundedElastic scheduler.
+ * 
+ * Like Service, subclasses expose typed methods of the canister interface, the
+ * calls by method name stay protected.
+ */
+public abstract class ReactiveService {
+	final Service service;
+
+	protected ReactiveService(Service service) {
+		if (service == null)
+			throw new IllegalArgumentException("Service is required");
+
+		this.service = service;
+	}
+
+	protected <T> Mono<T> call(String methodName, Object... args) {
+		Mono<T> call = Mono.defer(() -> Mono.fromFuture(this.service.<T>callAsync(methodName, args)));
+
+		return Mono.defer(() -> this.service.pendingInit == null ? call : call.subscribeOn(Schedulers.boundedElastic()));
+	}
+
+	/*
+	 * Calls the method once per argument list, keeping at most concurrency calls
+	 * in flight. Arguments are requested from upstream only as calls complete and
+	 * results are emitted in argument order. The first failure terminates the Flux.
+	 */
+	protected <T> Flux<T> callEach(String methodName, Publisher<Object[]> args, int concurrency) {
+		if (concurrency <= 0)
+			throw new IllegalArgumentException("Concurrency must be positive");
+
+		return Flux.from(args).flatMapSequential(arg -> this.<T>call(methodName, arg), concurrency, 1);
+	}
+
+	/*
+	 * Like callEach, but failures are emitted as unsuccessful BatchResult entries
+	 * and do not stop the remaining calls
+	 */
+	protected Flux<BatchResult> callEachResult(String methodName, Publisher<Object[]> args, int concurrency) {
+		if (concurrency <= 0)
+			throw new IllegalArgumentException("Concurrency must be positive");
+
+		return Flux.from(args).flatMapSequential(arg -> this.call(methodName, arg)
+				.map(BatchResult::success)
+				.defaultIfEmpty(BatchResult.success(null))
+				.onErrorResume(e -> Mono.just(BatchResult.failure(e))), concurrency, 1);
+	}
+
+	public Service getService() {
+		return this.service;
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.time.Clock;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.ic4j.agent.Agent;
+import org.ic4j.agent.AgentError;
+import org.ic4j.agent.UpdateBuilder;
+import org.ic4j.agent.requestid.RequestId;
+import org.ic4j.types.Principal;
+
+/*
+ * Submits an update call and polls its request status following a
+ * PollingStrategy. Polls are scheduled on a timer, no thread sleeps between
+ * attempts.
+ */
+public final class RequestPoller {
+	static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "ic4j-request-poller");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private RequestPoller() {
+	}
+
+	static CompletableFuture<byte[]> callAndPoll(Agent agent, Principal canister, Principal effectiveCanister,
+			String methodName, byte[] arg, PollingStrategy pollingStrategy) {
+		return UpdateBuilder.create(agent, canister, methodName).effectiveCanisterId(effectiveCanister).arg(arg).call()
+				.thenCompose(requestId -> poll(() -> requestStatus(agent, effectiveCanister, requestId), pollingStrategy,
+						() -> AgentError.create(AgentError.AgentErrorCode.TIMEOUT_WAITING_FOR_RESPONSE)));
+	}
+
+	/*
+	 * The reply once certified, empty while the request is still processing
+	 */
+	static CompletableFuture<Optional<byte[]>> requestStatus(Agent agent, Principal effectiveCanister,
+			RequestId requestId) {
+		return agent.requestStatusRaw(requestId, effectiveCanister).thenApply(requestStatus -> {
+			switch (requestStatus.status) {
+			case REPLIED_STATUS:
+				return Optional.of(requestStatus.replied.get().arg);
+			case REJECTED_STATUS:
+				throw AgentError.create(AgentError.AgentErrorCode.REPLICA_ERROR, requestStatus.rejectCode.orElse(null),
+						requestStatus.rejectMessage.orElse(null));
+			case DONE_STATUS:
+				throw AgentError.create(AgentError.AgentErrorCode.REQUEST_STATUS_DONE_NO_REPLY,
+						requestId.toHexString());
+			default:
+				return Optional.<byte[]>empty();
+			}
+		});
+	}
+
+	/*
+	 * Runs check after each delay of the strategy until it completes with a
+	 * value or fails. When the next poll would start after the timeout the
+	 * future fails with the timeout error instead.
+	 */
+	public static <T> CompletableFuture<T> poll(Supplier<CompletableFuture<Optional<T>>> check,
+			PollingStrategy pollingStrategy, Supplier<? extends Throwable> timeoutError) {
+		return poll(check, pollingStrategy, timeoutError, Clock.systemUTC());
+	}
+
+	/*
+	 * The deadline is measured with the given clock
+	 */
+	public static <T> CompletableFuture<T> poll(Supplier<CompletableFuture<Optional<T>>> check,
+			PollingStrategy pollingStrategy, Supplier<? extends Throwable> timeoutError, Clock clock) {
+		CompletableFuture<T> response = new CompletableFuture<T>();
+
+		long deadline = clock.millis() + pollingStrategy.timeout;
+
+		schedule(check, pollingStrategy, timeoutError, clock, 0, deadline, response);
+
+		return response;
+	}
+
+	static <T> void schedule(Supplier<CompletableFuture<Optional<T>>> check, PollingStrategy pollingStrategy,
+			Supplier<? extends Throwable> timeoutError, Clock clock, int attempt, long deadline,
+			CompletableFuture<T> response) {
+		if (response.isDone())
+			return;
+
+		long delay = pollingStrategy.delay(attempt);
+
+		if (clock.millis() + delay > deadline) {
+			response.completeExceptionally(timeoutError.get());
+			return;
+		}
+
+		TIMER.schedule(() -> poll(check, pollingStrategy, timeoutError, clock, attempt, deadline, response), delay,
+				TimeUnit.MILLISECONDS);
+	}
+
+	static <T> void poll(Supplier<CompletableFuture<Optional<T>>> check, PollingStrategy pollingStrategy,
+			Supplier<? extends Throwable> timeoutError, Clock clock, int attempt, long deadline,
+			CompletableFuture<T> response) {
+		CompletableFuture<Optional<T>> result;
+
+		try {
+			result = check.get();
+		} catch (RuntimeException e) {
+			response.completeExceptionally(e);
+			return;
+		}
+
+		result.whenComplete((value, ex) -> {
+			if (ex != null)
+				response.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+			else if (value != null && value.isPresent())
+				response.complete(value.get());
+			else
+				schedule(check, pollingStrategy, timeoutError, clock, attempt + 1, deadline, response);
+		});
+	}
+}
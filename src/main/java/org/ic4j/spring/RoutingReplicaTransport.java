@@ -0,0 +1,135 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.ic4j.agent.AgentError;
+import org.ic4j.agent.ReplicaResponse;
+import org.ic4j.agent.ReplicaTransport;
+import org.ic4j.agent.requestid.RequestId;
+import org.ic4j.types.Principal;
+
+/*
+ * Spreads replica requests over several boundary nodes with an EndpointRouter.
+ * Each request is routed to the best endpoint. Only transport failures and
+ * HTTP 5xx responses are retried and count against an endpoint, retrying calls
+ * is safe as the replica deduplicates by request id. Queries can optionally be
+ * hedged.
+ */
+public final class RoutingReplicaTransport implements ReplicaTransport {
+	static final Pattern HTTP_STATUS = Pattern.compile("\\b([1-5][0-9][0-9])\\b");
+
+	final EndpointRouter<ReplicaTransport> router;
+
+	final boolean hedgeQueries;
+
+	public RoutingReplicaTransport(List<String> urls, List<ReplicaTransport> transports, boolean hedgeQueries) {
+		this.router = new EndpointRouter<ReplicaTransport>(urls, transports, RoutingReplicaTransport::isRetryable);
+		this.hedgeQueries = hedgeQueries;
+	}
+
+	public EndpointRouter<ReplicaTransport> getRouter() {
+		return this.router;
+	}
+
+	/*
+	 * Checks every endpoint with a status request each interval milliseconds
+	 */
+	public void startHealthCheck(long interval) {
+		this.router.startHealthCheck(interval, ReplicaTransport::status);
+	}
+
+	public void stopHealthCheck() {
+		this.router.stopHealthCheck();
+	}
+
+	@Override
+	public CompletableFuture<ReplicaResponse> status() {
+		return this.router.route(ReplicaTransport::status);
+	}
+
+	@Override
+	public CompletableFuture<ReplicaResponse> query(Principal effectiveCanisterId, byte[] envelope,
+			Map<String, String> headers) {
+		if (this.hedgeQueries)
+			return this.router.hedge(endpoint -> endpoint.query(effectiveCanisterId, envelope, headers));
+
+		return this.router.route(endpoint -> endpoint.query(effectiveCanisterId, envelope, headers));
+	}
+
+	@Override
+	public CompletableFuture<ReplicaResponse> call(Principal effectiveCanisterId, byte[] envelope, RequestId requestId,
+			Map<String, String> headers) {
+		return this.router.route(endpoint -> endpoint.call(effectiveCanisterId, envelope, requestId, headers));
+	}
+
+	@Override
+	public CompletableFuture<ReplicaResponse> readState(Principal effectiveCanisterId, byte[] envelope,
+			Map<String, String> headers) {
+		return this.router.route(endpoint -> endpoint.readState(effectiveCanisterId, envelope, headers));
+	}
+
+	/*
+	 * Transport failures (I/O errors, timeouts) and HTTP 5xx responses may
+	 * succeed on another boundary node. Rejects, 4xx responses and decoding
+	 * errors would fail the same way everywhere.
+	 */
+	static boolean isRetryable(Throwable error) {
+		for (Throwable cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+			if (cause instanceof IOException || cause instanceof TimeoutException)
+				return true;
+
+			if (cause instanceof AgentError) {
+				int status = httpStatus((AgentError) cause);
+
+				if (status > 0)
+					return status >= 500;
+			}
+		}
+
+		return false;
+	}
+
+	static int httpStatus(AgentError error) {
+		if (error.getCode() == null || !error.getCode().name().startsWith("HTTP") || error.getMessage() == null)
+			return -1;
+
+		Matcher matcher = HTTP_STATUS.matcher(error.getMessage());
+
+		return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+	}
+
+	@Override
+	public String toString() {
+		return "RoutingReplicaTransport" + this.urls();
+	}
+
+	String urls() {
+		StringBuilder urls = new StringBuilder();
+
+		for (EndpointRouter.Endpoint<ReplicaTransport> endpoint : this.router.getEndpoints())
+			urls.append(urls.length() == 0 ? "[" : ", ").append(endpoint.getUrl());
+
+		return urls.append(']').toString();
+	}
+}
@@ -18,37 +18,63 @@ package org.ic4j.spring;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.lang.reflect.Method;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.ic4j.agent.Agent;
-import org.ic4j.agent.AgentBuilder;
 import org.ic4j.agent.FuncProxy;
 import org.ic4j.agent.ProxyBuilder;
-import org.ic4j.agent.ReplicaTransport;
 import org.ic4j.agent.annotations.Canister;
 import org.ic4j.agent.annotations.EffectiveCanister;
+import org.ic4j.agent.annotations.QUERY;
 import org.ic4j.agent.annotations.Transport;
-import org.ic4j.agent.http.ReplicaApacheHttpTransport;
 import org.ic4j.agent.identity.AnonymousIdentity;
-import org.ic4j.agent.identity.BasicIdentity;
 import org.ic4j.agent.identity.Identity;
-import org.ic4j.agent.identity.Prime256v1Identity;
-import org.ic4j.agent.identity.Secp256k1Identity;
 import org.ic4j.candid.parser.IDLType;
 import org.ic4j.types.Func;
 import org.ic4j.types.Principal;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.env.Environment;
 import org.springframework.core.io.ResourceLoader;
 
 
 public abstract class Service {
+	static final Log LOG = LogFactory.getLog(Service.class);
+	
+	static final String[] POLLING_PROPERTIES = { ".initialDelay", ".multiplier", ".maxDelay", ".timeout" };
+	
 	@Autowired
 	protected Environment env;
 	
+	@Autowired(required = false)
+	protected AgentRegistry agentRegistry;
+	
+	@Autowired(required = false)
+	protected CallMetrics callMetrics;
+	
+	/*
+	 * Executor for the blocking calls of submit and of CallBatch entries callAsync
+	 * rejects. Any bean named taskExecutor is injected, the virtual thread one of
+	 * VirtualThreadConfiguration or the application's own @Async executor.
+	 * Without one, submit uses callAsync and batches use the common pool.
+	 * setTaskExecutor overrides the injected executor.
+	 */
+	@Autowired(required = false)
+	@Qualifier(VirtualThreadConfiguration.TASK_EXECUTOR_BEAN_NAME)
+	protected Executor taskExecutor;
+	
 	Identity identity;
 
 	boolean loadIDL = false;
@@ -65,6 +91,27 @@ public abstract class Service {
 	
 	private Class interfaceClass;
 	
+	final Map<String, FuncProxy<?>> funcProxies = new ConcurrentHashMap<String, FuncProxy<?>>();
+	
+	final Map<String, CanisterMethod> canisterMethods = new ConcurrentHashMap<String, CanisterMethod>();
+	
+	Agent agent;
+	
+	Principal canister;
+	
+	Principal effectiveCanister;
+	
+	QueryResultCache queryCache = new QueryResultCache();
+	
+	// share one in-flight request between identical concurrent query calls
+	protected boolean coalesceQueries = false;
+	
+	final SingleFlight singleFlight = new SingleFlight();
+
+	// defer building the agent and proxies until the first call
+	protected boolean lazyInit = false;
+	
+	volatile Callable<Void> pendingInit;
 
 	final ResourceLoader resourceLoader;
 
@@ -76,6 +123,48 @@ public abstract class Service {
 		if(clazz == null)
             throw new IllegalArgumentException("Interface class is required");
 		
+		if (this.env != null)
+			this.lazyInit = this.env.getProperty("ic.lazyInit", Boolean.class, this.lazyInit);
+		
+		if (this.lazyInit) {
+			// agent and proxies are built on first call or by ServiceWarmup
+			this.pendingInit = () -> {
+				this.initialize(clazz, location, canisterId, effectiveCanisterId, identity);
+				return null;
+			};
+			
+			return;
+		}
+		
+		this.initialize(clazz, location, canisterId, effectiveCanisterId, identity);
+	}
+	
+	/*
+	 * Completes a deferred initialization, no-op when the service is already initialized
+	 */
+	public void warmUp() {
+		if (this.pendingInit == null)
+			return;
+		
+		synchronized (this) {
+			Callable<Void> pendingInit = this.pendingInit;
+			
+			if (pendingInit == null)
+				return;
+			
+			try {
+				pendingInit.call();
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+			
+			this.pendingInit = null;
+		}
+	}
+	
+	void initialize(Class<?> clazz, String location, String canisterId, String effectiveCanisterId, Identity identity) throws URISyntaxException, IOException {
 		this.interfaceClass = clazz;
 		
 		File fileDirectory = resourceLoader.getResource("file:").getFile();
@@ -105,19 +194,11 @@ public abstract class Service {
 					identity = new AnonymousIdentity();
 					break;
 				case BASIC:
-					path = Paths.get(fileDirectory.getAbsolutePath(), identityAnnotation.pem_file());
-
-					identity = BasicIdentity.fromPEMFile(path);
-					break;
 				case SECP256K1:
-					path = Paths.get(fileDirectory.getAbsolutePath(), identityAnnotation.pem_file());
-
-					identity = Secp256k1Identity.fromPEMFile(path);
-					break;
 				case PRIME256V1:
 					path = Paths.get(fileDirectory.getAbsolutePath(), identityAnnotation.pem_file());
 
-					identity = Prime256v1Identity.fromPEMFile(path);
+					identity = IdentityCache.get(identityAnnotation.type(), path);
 					break;
 				default:
 					identity = new AnonymousIdentity();
@@ -126,10 +207,6 @@ public abstract class Service {
 			}
 		}
 		
-		ReplicaTransport transport = ReplicaApacheHttpTransport.create(location);
-
-		Agent agent = new AgentBuilder().transport(transport).identity(identity).build();
-
 		Principal canister = null;
 		Principal effectiveCanister = null;
 
@@ -161,11 +238,7 @@ public abstract class Service {
 		if (clazz.isAnnotationPresent(org.ic4j.agent.annotations.IDLFile.class)) {
 			String idlFileName = clazz.getAnnotation(org.ic4j.agent.annotations.IDLFile.class).value();
 
-			InputStream inputStream = clazz.getClassLoader().getResourceAsStream(idlFileName);
-			Path idlFile = Paths.get(fileDirectory + File.separator  + idlFileName);
-
-
-			this.idlFile = idlFile;
+			this.idlFile = IDLFileCache.get(idlFileName, fileDirectory, clazz.getClassLoader());
 		}
 		if (clazz.isAnnotationPresent(org.ic4j.agent.annotations.Properties.class)) {
 			org.ic4j.agent.annotations.Properties properties = clazz
@@ -177,28 +250,432 @@ public abstract class Service {
 				this.loadIDL = true;
 		}
 
-		if (this.isLocal)
-			agent.fetchRootKey();
+		AgentRegistry registry = this.agentRegistry;
+		
+		if (registry == null)
+			registry = AgentRegistry.getDefault(this.env);
+
+		TransportType transportType = null;
+		
+		if (clazz.isAnnotationPresent(HttpTransport.class))
+			transportType = clazz.getAnnotation(HttpTransport.class).value();
+		
+		Agent agent = registry.getAgent(location, identity, this.isLocal, this.disableRangeCheck, transportType);
 
-		agent.setVerify(this.disableRangeCheck);
+		this.agent = agent;
+		this.canister = canister;
+		this.effectiveCanister = effectiveCanister;
 
 		this.proxyBuilder = ProxyBuilder.create(agent).effectiveCanisterId(effectiveCanister)
 				.idlFile(this.idlFile).loadIDL(this.loadIDL);
-	}		
+		
+		this.funcProxies.clear();
+		this.canisterMethods.clear();
+		
+		this.queryCache = this.createQueryCache(clazz);
+		
+		if (this.env != null)
+			this.coalesceQueries = this.env.getProperty("ic.coalesceQueries", Boolean.class, this.coalesceQueries);
+		
+		// resolve proxies for all interface methods upfront, failures are deferred to the first call
+		for (Method method : clazz.getMethods()) {
+			try {
+				this.getFuncProxy(method.getName());
+			} catch (Exception e) {
+				if (LOG.isDebugEnabled())
+					LOG.debug("Unable to resolve " + clazz.getSimpleName() + "." + method.getName()
+							+ " upfront, retrying on first call", e);
+			}
+		}
+	}
+	
+	QueryResultCache createQueryCache(Class<?> clazz) {
+		QueryResultCache queryCache = new QueryResultCache();
+		
+		QueryCache interfaceAnnotation = clazz.getAnnotation(QueryCache.class);
+		
+		for (Method method : clazz.getMethods()) {
+			if (!method.isAnnotationPresent(QUERY.class))
+				continue;
+			
+			QueryCache cacheAnnotation = interfaceAnnotation;
+			
+			if (method.isAnnotationPresent(QueryCache.class))
+				cacheAnnotation = method.getAnnotation(QueryCache.class);
+			
+			long ttl = 0;
+			int maxSize = 1000;
+			
+			if (cacheAnnotation != null) {
+				ttl = cacheAnnotation.ttl();
+				maxSize = cacheAnnotation.maxSize();
+			}
+			
+			if (this.env != null) {
+				String prefix = "ic.queryCache." + clazz.getSimpleName() + "." + method.getName();
+				
+				ttl = this.env.getProperty(prefix + ".ttl", Long.class, ttl);
+				maxSize = this.env.getProperty(prefix + ".maxSize", Integer.class, maxSize);
+			}
+			
+			queryCache.configure(method.getName(), ttl, maxSize);
+		}
+		
+		return queryCache;
+	}
+	
+	/*
+	 * Polling strategy of an update method from @Polling and the ic.polling
+	 * properties, null keeps the agent's Waiter. Setting any of the properties
+	 * enables polling.
+	 */
+	PollingStrategy createPollingStrategy(Class<?> clazz, Method method) {
+		Polling pollingAnnotation = clazz.getAnnotation(Polling.class);
+		
+		if (method.isAnnotationPresent(Polling.class))
+			pollingAnnotation = method.getAnnotation(Polling.class);
+		
+		long initialDelay = PollingStrategy.DEFAULT_INITIAL_DELAY;
+		double multiplier = PollingStrategy.DEFAULT_MULTIPLIER;
+		long maxDelay = PollingStrategy.DEFAULT_MAX_DELAY;
+		long timeout = PollingStrategy.DEFAULT_TIMEOUT;
+		
+		boolean enabled = pollingAnnotation != null;
+		
+		if (pollingAnnotation != null) {
+			initialDelay = pollingAnnotation.initialDelay();
+			multiplier = pollingAnnotation.multiplier();
+			maxDelay = pollingAnnotation.maxDelay();
+			timeout = pollingAnnotation.timeout();
+		}
+		
+		if (this.env != null) {
+			// global settings first, then the method specific ones
+			for (String prefix : new String[] { "ic.polling", "ic.polling." + clazz.getSimpleName() + "." + method.getName() }) {
+				for (String property : POLLING_PROPERTIES)
+					enabled |= this.env.containsProperty(prefix + property);
+				
+				initialDelay = this.env.getProperty(prefix + ".initialDelay", Long.class, initialDelay);
+				multiplier = this.env.getProperty(prefix + ".multiplier", Double.class, multiplier);
+				maxDelay = this.env.getProperty(prefix + ".maxDelay", Long.class, maxDelay);
+				timeout = this.env.getProperty(prefix + ".timeout", Long.class, timeout);
+			}
+		}
+		
+		if (!enabled)
+			return null;
+		
+		return PollingStrategy.exponential(initialDelay, multiplier, Math.max(initialDelay, maxDelay), timeout);
+	}
+	
+	// polling set up for this method itself, with @Polling on the method or method specific properties
+	boolean isPollingRequested(Class<?> clazz, Method method) {
+		if (method.isAnnotationPresent(Polling.class))
+			return true;
+		
+		if (this.env == null)
+			return false;
+		
+		String prefix = "ic.polling." + clazz.getSimpleName() + "." + method.getName();
+		
+		for (String property : POLLING_PROPERTIES)
+			if (this.env.containsProperty(prefix + property))
+				return true;
+		
+		return false;
+	}
+	
+	public QueryResultCache getQueryCache() {
+		return this.queryCache;
+	}
+	
+	public void setCoalesceQueries(boolean coalesceQueries) {
+		this.coalesceQueries = coalesceQueries;
+	}
+	
+	public long getCoalescedQueries() {
+		return this.singleFlight.getShared();
+	}
+	
+	<T> FuncProxy<T> getFuncProxy(String methodName) {
+		FuncProxy<?> funcProxy = this.funcProxies.get(methodName);
+		
+		if (funcProxy == null) {
+			Func funcValue = new Func(methodName);
+
+			funcProxy = this.proxyBuilder.getFuncProxy(funcValue, this.interfaceClass);
+			
+			FuncProxy<?> existing = this.funcProxies.putIfAbsent(methodName, funcProxy);
+			
+			if (existing != null)
+				funcProxy = existing;
+		}
+		
+		return (FuncProxy<T>) funcProxy;
+	}
 
 	protected <T> T call( String methodName, Object... args) {
+		this.warmUp();
+		
+		CallMetrics callMetrics = this.callMetrics;
+		
+		CanisterMethod canisterMethod = this.getCanisterMethod(methodName);
+		
+		// polled methods are sent through invoke, which records them with their payload sizes
+		if (callMetrics == null || canisterMethod.pollingStrategy != null)
+			return this.proxyCall(methodName, args);
+		
+		boolean isQuery = canisterMethod.isQuery;
+		String canisterId = String.valueOf(this.canister);
+		
+		long start = System.nanoTime();
+		Throwable error = null;
+		
+		callMetrics.inFlight(canisterId, methodName, isQuery, 1);
+		
 		try {
-			Func funcValue = new Func(methodName);
+			return this.proxyCall(methodName, args);
+		} catch (RuntimeException e) {
+			error = e;
+			
+			throw e;
+		} finally {
+			callMetrics.inFlight(canisterId, methodName, isQuery, -1);
+			callMetrics.record(canisterId, methodName, isQuery, System.nanoTime() - start, -1, -1, error);
+		}
+	}
+	
+	<T> T proxyCall(String methodName, Object... args) {
+		try {
+			FuncProxy<T> funcProxy = this.getFuncProxy(methodName);
+			
+			CanisterMethod canisterMethod = this.getCanisterMethod(methodName);
+			
+			// the proxy polls with the fixed Waiter, a polling strategy needs the direct call path
+			boolean direct = canisterMethod.pollingStrategy != null;
+			
+			QueryResultCache queryCache = this.queryCache;
+			
+			boolean isCached = queryCache.isCached(methodName);
+			
+			if (isCached || (this.coalesceQueries && canisterMethod.isQuery)) {
+				CallKey key = new CallKey(methodName, canisterMethod.encode(args));
+				
+				Callable<T> send = direct ? () -> canisterMethod.decode(join(this.invoke(canisterMethod, key.arg)))
+						: () -> funcProxy.call(args);
+				
+				long generation = queryCache.generation();
+				
+				if (isCached) {
+					Object value = queryCache.get(key);
+				
+					if (value != QueryResultCache.NOT_FOUND)
+						return (T) value;
+				}
+				
+				T response;
+				
+				if (this.coalesceQueries)
+					response = this.singleFlight.call(key, send);
+				else
+					response = send.call();
+				
+				if (isCached)
+					queryCache.put(key, response, generation);
+				
+				return response;
+			}
 
-			FuncProxy<T> funcProxy = this.proxyBuilder.getFuncProxy(funcValue, this.interfaceClass);
+			try {
+				if (direct)
+					return canisterMethod.decode(join(this.invoke(canisterMethod, canisterMethod.encode(args))));
+				
+				return funcProxy.call(args);
+			} finally {
+				// a failed update may still have changed state, same as callAsync
+				if (!queryCache.isEmpty() && !canisterMethod.isQuery)
+					queryCache.invalidateAll();
+			}
 
-			T response = funcProxy.call(args);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	// fails with the cause like FuncProxy does, not with the CompletionException
+	static <T> T join(CompletableFuture<T> future) throws Exception {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			
+			throw e;
+		}
+	}
+	
+	CanisterMethod getCanisterMethod(String methodName) {
+		CanisterMethod canisterMethod = this.canisterMethods.get(methodName);
+		
+		if (canisterMethod == null) {
+			canisterMethod = CanisterMethod.resolve(this.interfaceClass, methodName,
+					this.loadIDL || this.idlFile != null);
+			
+			if (!canisterMethod.isQuery) {
+				PollingStrategy pollingStrategy = this.createPollingStrategy(this.interfaceClass, canisterMethod.method);
+				
+				// polling bypasses FuncProxy, refuse rather than change how arguments and results are converted
+				if (pollingStrategy != null && !canisterMethod.isSupported()) {
+					if (this.isPollingRequested(this.interfaceClass, canisterMethod.method))
+						throw new IllegalStateException("Polling is configured for " + methodName + " but "
+								+ canisterMethod.unsupported);
+					
+					// interface wide or global settings keep the agent Waiter for this method
+					pollingStrategy = null;
+				}
+				
+				canisterMethod.pollingStrategy = pollingStrategy;
+			}
+			
+			CanisterMethod existing = this.canisterMethods.putIfAbsent(methodName, canisterMethod);
+			
+			if (existing != null)
+				canisterMethod = existing;
+		}
+		
+		return canisterMethod;
+	}
+	
+	/*
+	 * Non blocking variant of call. Queries and updates are dispatched through the
+	 * agent's asynchronous path, the returned future completes when the replica
+	 * replies (updates after the request status is certified). Failures complete
+	 * the future exceptionally with the original cause. Methods with generic
+	 * parameter or return types, and services typed by an IDL file, fail with
+	 * UnsupportedOperationException and have to use call.
+	 */
+	protected <T> CompletableFuture<T> callAsync(String methodName, Object... args) {
+		try {
+			this.warmUp();
+			
+			CanisterMethod canisterMethod = this.getCanisterMethod(methodName);
+			
+			canisterMethod.checkSupported();
 
-			return response;
+			byte[] arg = canisterMethod.encode(args);
+			
+			QueryResultCache queryCache = this.queryCache;
+			
+			boolean isCached = queryCache.isCached(methodName);
+			
+			if (isCached || (this.coalesceQueries && canisterMethod.isQuery)) {
+				CallKey key = new CallKey(methodName, arg);
+				
+				long generation = queryCache.generation();
+				
+				if (isCached) {
+					Object value = queryCache.get(key);
+				
+					if (value != QueryResultCache.NOT_FOUND)
+						return CompletableFuture.completedFuture((T) value);
+				}
+				
+				Supplier<CompletableFuture<T>> supplier = () -> this.invoke(canisterMethod, arg)
+						.thenApply(output -> canisterMethod.<T>decode(output));
+				
+				CompletableFuture<T> response;
+				
+				if (this.coalesceQueries)
+					response = this.singleFlight.callAsync(key, supplier);
+				else
+					response = supplier.get();
+				
+				if (isCached)
+					response = response.thenApply(value -> {
+						queryCache.put(key, value, generation);
+						
+						return value;
+					});
+				
+				return response;
+			}
 
+			CompletableFuture<T> response = this.invoke(canisterMethod, arg)
+					.thenApply(output -> canisterMethod.<T>decode(output));
+			
+			if (!queryCache.isEmpty() && !canisterMethod.isQuery)
+				response = response.whenComplete((value, ex) -> queryCache.invalidateAll());
+			
+			return response;
 		} catch (Exception e) {
-			throw new RuntimeException(e);
+			CompletableFuture<T> response = new CompletableFuture<T>();
+			
+			response.completeExceptionally(e);
+			
+			return response;
 		}
-	}	
+	}
+	
+	/*
+	 * Runs the blocking call on the task executor, one thread per call parked while
+	 * an update is polled. Falls back to callAsync when no executor is configured.
+	 */
+	protected <T> CompletableFuture<T> submit(String methodName, Object... args) {
+		Executor taskExecutor = this.taskExecutor;
+		
+		if (taskExecutor == null)
+			return this.callAsync(methodName, args);
+		
+		return CompletableFuture.supplyAsync(() -> this.<T>call(methodName, args), taskExecutor);
+	}
+	
+	public void setTaskExecutor(Executor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+	
+	CompletableFuture<byte[]> invoke(CanisterMethod canisterMethod, byte[] arg) {
+		CompletableFuture<byte[]> output = canisterMethod.invoke(this.agent, this.canister, this.effectiveCanister, arg);
+		
+		CallMetrics callMetrics = this.callMetrics;
+		
+		if (callMetrics != null)
+			output = callMetrics.observe(String.valueOf(this.canister), canisterMethod.method.getName(),
+					canisterMethod.isQuery, arg.length, output);
+		
+		return output;
+	}
+	
+	/*
+	 * Starts a batch of calls on this service, executed concurrently through callAsync.
+	 * Protected like call and callAsync, subclasses expose batches of their own methods.
+	 */
+	protected CallBatch batch() {
+		return new CallBatch(this);
+	}
+	
+	/*
+	 * callAsync for a CallBatch entry. Methods callAsync rejects only run through
+	 * the blocking proxy, on the task executor or the common pool.
+	 */
+	<T> CompletableFuture<T> batchCall(String methodName, Object... args) {
+		CompletableFuture<T> response = this.callAsync(methodName, args);
+		
+		if (!response.isCompletedExceptionally())
+			return response;
+		
+		try {
+			response.join();
+		} catch (CompletionException e) {
+			if (!(e.getCause() instanceof UnsupportedOperationException))
+				return response;
+		}
+		
+		Executor taskExecutor = this.taskExecutor;
+		
+		if (taskExecutor == null)
+			return CompletableFuture.supplyAsync(() -> this.<T>call(methodName, args));
+		
+		return CompletableFuture.supplyAsync(() -> this.<T>call(methodName, args), taskExecutor);
+	}
 
-}
\ No newline at end of file
+}
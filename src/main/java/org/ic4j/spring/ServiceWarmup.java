@@ -0,0 +1,123 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/*
+ * Initializes all Service beans concurrently once the context is refreshed.
+ * Together with ic.lazyInit=true this takes the transport setup, identity
+ * loading and root key fetch of every canister bean off the serialized
+ * context startup. Concurrency is set with ic.warmup.concurrency.
+ */
+@Component
+public final class ServiceWarmup implements ApplicationListener<ContextRefreshedEvent> {
+	static final int DEFAULT_CONCURRENCY = 16;
+
+	static final Log LOG = LogFactory.getLog(ServiceWarmup.class);
+
+	final Map<String, Long> timings = new ConcurrentHashMap<String, Long>();
+
+	int concurrency = DEFAULT_CONCURRENCY;
+
+	public ServiceWarmup(Environment env) {
+		if (env != null)
+			this.concurrency = env.getProperty("ic.warmup.concurrency", Integer.class, DEFAULT_CONCURRENCY);
+	}
+
+	@Override
+	public void onApplicationEvent(ContextRefreshedEvent event) {
+		Map<String, Service> services = event.getApplicationContext().getBeansOfType(Service.class);
+
+		if (services.isEmpty())
+			return;
+
+		long start = System.nanoTime();
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.concurrency, services.size()),
+				runnable -> {
+					Thread thread = new Thread(runnable, "ic4j-warmup");
+					thread.setDaemon(true);
+					return thread;
+				});
+
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+
+			for (Map.Entry<String, Service> entry : services.entrySet())
+				futures.add(executor.submit(() -> this.warmUp(entry.getKey(), entry.getValue())));
+
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					// already logged per bean
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+
+		if (LOG.isInfoEnabled())
+			LOG.info("Initialized " + services.size() + " canister services in "
+					+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+	}
+
+	void warmUp(String beanName, Service service) {
+		long start = System.nanoTime();
+
+		try {
+			service.warmUp();
+
+			long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+			this.timings.put(beanName, duration);
+
+			if (LOG.isDebugEnabled())
+				LOG.debug("Initialized canister service " + beanName + " in " + duration + " ms");
+		} catch (RuntimeException e) {
+			LOG.warn("Failed to initialize canister service " + beanName, e);
+
+			throw e;
+		}
+	}
+
+	/*
+	 * Initialization time in milliseconds per bean name
+	 */
+	public Map<String, Long> getTimings() {
+		return Collections.unmodifiableMap(new LinkedHashMap<String, Long>(this.timings));
+	}
+}
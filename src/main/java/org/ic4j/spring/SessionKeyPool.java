@@ -0,0 +1,189 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.spring;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ic4j.internetidentity.Algorithm;
+
+/*
+ * Pool of pre-generated session key pairs per algorithm. A low priority worker
+ * refills the pool up to the target size whenever it drops to the low-water
+ * mark, callers take a key pair in constant time and fall back to inline
+ * generation when the pool is empty. The algorithms given at construction are
+ * filled right away.
+ */
+public final class SessionKeyPool {
+	final int targetSize;
+
+	final int lowWaterMark;
+
+	final ConcurrentMap<Algorithm, Queue<KeyPair>> keyPairs = new ConcurrentHashMap<Algorithm, Queue<KeyPair>>();
+
+	final ConcurrentMap<Algorithm, AtomicInteger> sizes = new ConcurrentHashMap<Algorithm, AtomicInteger>();
+
+	final ConcurrentMap<Algorithm, AtomicBoolean> refilling = new ConcurrentHashMap<Algorithm, AtomicBoolean>();
+
+	final AtomicLong hits = new AtomicLong();
+
+	final AtomicLong misses = new AtomicLong();
+
+	final Generator generator;
+
+	final ExecutorService executor;
+
+	public SessionKeyPool(int targetSize, int lowWaterMark, Algorithm... algorithms) {
+		this(targetSize, lowWaterMark, SessionKeyPool::generate, algorithms);
+	}
+
+	public SessionKeyPool(int targetSize, int lowWaterMark, Generator generator, Algorithm... algorithms) {
+		if (targetSize <= 0)
+			throw new IllegalArgumentException("Target size must be positive");
+
+		if (lowWaterMark < 0 || lowWaterMark >= targetSize)
+			throw new IllegalArgumentException("Low-water mark must be between 0 and target size");
+
+		this.targetSize = targetSize;
+		this.lowWaterMark = lowWaterMark;
+		this.generator = generator;
+
+		this.executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "ic4j-session-key-pool");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		});
+
+		for (Algorithm algorithm : algorithms)
+			this.prefill(algorithm);
+	}
+
+	public KeyPair take(Algorithm algorithm)
+			throws NoSuchAlgorithmException, NoSuchProviderException, InvalidAlgorithmParameterException {
+		Queue<KeyPair> queue = this.getQueue(algorithm);
+
+		KeyPair keyPair = queue.poll();
+
+		if (keyPair != null) {
+			this.hits.incrementAndGet();
+
+			if (this.sizes.get(algorithm).decrementAndGet() <= this.lowWaterMark)
+				this.refill(algorithm);
+
+			return keyPair;
+		}
+
+		this.misses.incrementAndGet();
+		this.refill(algorithm);
+
+		return this.generator.generate(algorithm);
+	}
+
+	/*
+	 * Starts filling the pool for the given algorithm ahead of the first request
+	 */
+	public void prefill(Algorithm algorithm) {
+		this.getQueue(algorithm);
+		this.refill(algorithm);
+	}
+
+	public int size(Algorithm algorithm) {
+		AtomicInteger size = this.sizes.get(algorithm);
+
+		return size == null ? 0 : size.get();
+	}
+
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	public double getHitRate() {
+		long hits = this.hits.get();
+		long total = hits + this.misses.get();
+
+		return total == 0 ? 0.0 : (double) hits / total;
+	}
+
+	public void shutdown() {
+		this.executor.shutdownNow();
+	}
+
+	Queue<KeyPair> getQueue(Algorithm algorithm) {
+		Queue<KeyPair> queue = this.keyPairs.get(algorithm);
+
+		if (queue == null) {
+			this.sizes.putIfAbsent(algorithm, new AtomicInteger());
+			this.refilling.putIfAbsent(algorithm, new AtomicBoolean());
+
+			this.keyPairs.putIfAbsent(algorithm, new ConcurrentLinkedQueue<KeyPair>());
+			queue = this.keyPairs.get(algorithm);
+		}
+
+		return queue;
+	}
+
+	void refill(Algorithm algorithm) {
+		AtomicBoolean flag = this.refilling.get(algorithm);
+
+		if (this.executor.isShutdown() || !flag.compareAndSet(false, true))
+			return;
+
+		this.executor.execute(() -> {
+			try {
+				Queue<KeyPair> queue = this.keyPairs.get(algorithm);
+				AtomicInteger size = this.sizes.get(algorithm);
+
+				while (size.get() < this.targetSize && !Thread.currentThread().isInterrupted()) {
+					queue.offer(this.generator.generate(algorithm));
+					size.incrementAndGet();
+				}
+			} catch (GeneralSecurityException e) {
+				// leave the pool as is, callers fall back to inline generation
+			} finally {
+				flag.set(false);
+			}
+		});
+	}
+
+	@FunctionalInterface
+	public interface Generator {
+		KeyPair generate(Algorithm algorithm)
+				throws NoSuchAlgorithmException, NoSuchProviderException, InvalidAlgorithmParameterException;
+	}
+
+	static KeyPair generate(Algorithm algorithm)
+			throws NoSuchAlgorithmException, NoSuchProviderException, InvalidAlgorithmParameterException {
+		return org.ic4j.internetidentity.InternetIdentityService.generateSessionKey(algorithm);
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+
+package org.ic4j.spring;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+ * Coalesces identical concurrent calls. The first caller for a key executes
+ * the call, callers arriving while it is in flight wait for and share its
+ * result. Nothing is retained once the call completes. Every caller gets its
+ * own copy of an array result, array elements and all other results are
+ * shared and must not be modified.
+ */
+public final class SingleFlight {
+	final ConcurrentMap<CallKey, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<CallKey, CompletableFuture<Object>>();
+
+	final AtomicLong shared = new AtomicLong();
+
+	public <T> T call(CallKey key, Callable<T> callable) throws Exception {
+		CompletableFuture<Object> future = new CompletableFuture<Object>();
+
+		CompletableFuture<Object> existing = this.inFlight.putIfAbsent(key, future);
+
+		if (existing != null) {
+			this.shared.incrementAndGet();
+
+			try {
+				return (T) QueryResultCache.copy(existing.get());
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Exception)
+					throw (Exception) e.getCause();
+
+				throw e;
+			}
+		}
+
+		try {
+			T response = callable.call();
+
+			// waiters copy from the shared value, keep it apart from the caller's result
+			future.complete(QueryResultCache.copy(response));
+
+			return response;
+		} catch (Exception e) {
+			future.completeExceptionally(e);
+
+			throw e;
+		} finally {
+			this.inFlight.remove(key, future);
+		}
+	}
+
+	public <T> CompletableFuture<T> callAsync(CallKey key, Supplier<CompletableFuture<T>> supplier) {
+		CompletableFuture<Object> future = new CompletableFuture<Object>();
+
+		CompletableFuture<Object> existing = this.inFlight.putIfAbsent(key, future);
+
+		if (existing != null) {
+			this.shared.incrementAndGet();
+
+			return existing.thenApply(value -> (T) QueryResultCache.copy(value));
+		}
+
+		try {
+			supplier.get().whenComplete((value, ex) -> {
+				this.inFlight.remove(key, future);
+
+				if (ex == null)
+					future.complete(value);
+				else
+					future.completeExceptionally(ex);
+			});
+		} catch (Exception e) {
+			this.inFlight.remove(key, future);
+
+			future.completeExceptionally(e);
+		}
+
+		return future.thenApply(value -> (T) QueryResultCache.copy(value));
+	}
+
+	public long getShared() {
+		return this.shared.get();
+	}
+}
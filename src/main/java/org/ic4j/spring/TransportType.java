@@ -0,0 +1,32 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+/*
+ * HTTP client used to talk to the replica. APACHE pools HTTP/1.1 connections
+ * per route, JAVA11 uses the JDK HttpClient, which negotiates HTTP/2 with the
+ * boundary node and multiplexes concurrent calls over one connection.
+ */
+public enum TransportType {
+	APACHE, JAVA11;
+
+	static TransportType parse(String value, TransportType defaultValue) {
+		if (value == null || value.trim().isEmpty())
+			return defaultValue;
+
+		return TransportType.valueOf(value.trim().toUpperCase());
+	}
+}
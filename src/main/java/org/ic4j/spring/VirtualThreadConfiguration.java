@@ -0,0 +1,66 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ConfigurationCondition;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+
+/*
+ * Import to run @Async canister operations and Service.submit on virtual
+ * threads. Update calls park a thread for seconds while the request status is
+ * polled, a virtual thread per call avoids saturating a small platform pool.
+ * Registers the taskExecutor bean used by @EnableAsync, unless the application
+ * already defines one, the JDK has no virtual threads or ic.virtualThreads is
+ * false. Services inject the taskExecutor bean by name, so Service.submit and
+ * the blocking fallback of CallBatch run on virtual threads too. An application
+ * defined taskExecutor takes that role as well.
+ */
+@Configuration
+@Conditional(VirtualThreadConfiguration.OnVirtualThreads.class)
+public class VirtualThreadConfiguration {
+	public static final String TASK_EXECUTOR_BEAN_NAME = "taskExecutor";
+
+	// a virtual thread per task executor holds no pooled threads, nothing to shut down
+	@Bean(name = TASK_EXECUTOR_BEAN_NAME)
+	public TaskExecutor taskExecutor() {
+		return new ConcurrentTaskExecutor(VirtualThreads.newExecutor());
+	}
+
+	// evaluated when beans are registered, after the application's own configuration was parsed
+	static final class OnVirtualThreads implements ConfigurationCondition {
+		@Override
+		public ConfigurationPhase getConfigurationPhase() {
+			return ConfigurationPhase.REGISTER_BEAN;
+		}
+
+		@Override
+		public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+			if (!VirtualThreads.isAvailable())
+				return false;
+
+			if (!context.getEnvironment().getProperty("ic.virtualThreads", Boolean.class, true))
+				return false;
+
+			return context.getBeanFactory() == null || !context.getBeanFactory().containsBean(TASK_EXECUTOR_BEAN_NAME);
+		}
+	}
+}
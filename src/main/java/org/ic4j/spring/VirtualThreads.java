@@ -0,0 +1,59 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Access to JDK 21 virtual threads from Java 8 bytecode. The library keeps its
+ * Java 8 target, the executor factory is looked up reflectively and is only
+ * available when the application runs on a JDK with virtual threads.
+ */
+public final class VirtualThreads {
+	static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = lookup();
+
+	private VirtualThreads() {
+	}
+
+	public static boolean isAvailable() {
+		return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+	}
+
+	/*
+	 * Executor starting a new virtual thread per task
+	 */
+	public static ExecutorService newExecutor() {
+		if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null)
+			throw new UnsupportedOperationException(
+					"Virtual threads require Java 21 or later, running on " + System.getProperty("java.version"));
+
+		try {
+			return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Unable to create virtual thread executor", e);
+		}
+	}
+
+	static Method lookup() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+}
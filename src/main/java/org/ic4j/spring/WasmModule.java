@@ -0,0 +1,104 @@
+/*
+ * Copyright 2024 Exilor Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+*/
+package org.ic4j.spring;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/*
+ * Wasm module shared between installations. The module hash and the chunk
+ * hashes used by chunked installation are computed once.
+ */
+public final class WasmModule {
+	final byte[] bytes;
+
+	final byte[] hash;
+
+	volatile ChunkHash[] chunkHashes;
+
+	WasmModule(byte[] bytes) {
+		this.bytes = bytes;
+		this.hash = sha256(bytes, 0, bytes.length);
+	}
+
+	public static WasmModule of(byte[] bytes) {
+		if (bytes == null)
+			throw new IllegalArgumentException("Wasm module is required");
+
+		return new WasmModule(bytes);
+	}
+
+	public byte[] getBytes() {
+		return this.bytes;
+	}
+
+	public byte[] getHash() {
+		return this.hash;
+	}
+
+	public int size() {
+		return this.bytes.length;
+	}
+
+	int getChunkCount() {
+		return (this.bytes.length + ManagementService.CHUNK_SIZE - 1) / ManagementService.CHUNK_SIZE;
+	}
+
+	byte[] getChunk(int index) {
+		int from = index * ManagementService.CHUNK_SIZE;
+
+		return Arrays.copyOfRange(this.bytes, from, Math.min(from + ManagementService.CHUNK_SIZE, this.bytes.length));
+	}
+
+	ChunkHash[] getChunkHashes() {
+		ChunkHash[] chunkHashes = this.chunkHashes;
+
+		if (chunkHashes == null) {
+			synchronized (this) {
+				chunkHashes = this.chunkHashes;
+
+				if (chunkHashes == null) {
+					chunkHashes = new ChunkHash[this.getChunkCount()];
+
+					for (int i = 0; i < chunkHashes.length; i++) {
+						int from = i * ManagementService.CHUNK_SIZE;
+
+						chunkHashes[i] = new ChunkHash();
+						chunkHashes[i].hash = sha256(this.bytes, from,
+								Math.min(ManagementService.CHUNK_SIZE, this.bytes.length - from));
+					}
+
+					this.chunkHashes = chunkHashes;
+				}
+			}
+		}
+
+		return chunkHashes;
+	}
+
+	static byte[] sha256(byte[] bytes, int offset, int length) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+			digest.update(bytes, offset, length);
+
+			return digest.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
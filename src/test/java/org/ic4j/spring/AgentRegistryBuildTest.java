@@ -0,0 +1,147 @@
+package org.ic4j.spring;
+
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.ic4j.agent.Agent;
+import org.ic4j.agent.identity.AnonymousIdentity;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AgentRegistryBuildTest {
+	static final String LOCAL = "http://127.0.0.1:4943/";
+
+	static final String MAINNET = "https://icp-api.io";
+
+	final AgentRegistry agentRegistry = new AgentRegistry(null);
+
+	final AtomicInteger builds = new AtomicInteger();
+
+	@Test
+	public void testConcurrentCallersShareOneBuild() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+
+		this.agentRegistry.agentFactory = (location, identity, fetchRootKey, verify, transportType) -> {
+			this.builds.incrementAndGet();
+			await(release);
+
+			return this.agentRegistry.createAgent(location, identity, fetchRootKey, verify, transportType);
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+
+		try {
+			List<CompletableFuture<Agent>> agents = new ArrayList<CompletableFuture<Agent>>();
+
+			for (int i = 0; i < 4; i++)
+				agents.add(CompletableFuture.supplyAsync(() -> this.getAgent(LOCAL), executor));
+
+			await(() -> this.builds.get() == 1);
+
+			release.countDown();
+
+			Agent agent = agents.get(0).get(5, TimeUnit.SECONDS);
+
+			for (CompletableFuture<Agent> other : agents)
+				Assertions.assertSame(agent, other.get(5, TimeUnit.SECONDS));
+
+			Assertions.assertEquals(1, this.builds.get());
+			Assertions.assertEquals(1, this.agentRegistry.size());
+		} finally {
+			executor.shutdownNow();
+			this.agentRegistry.destroy();
+		}
+	}
+
+	@Test
+	public void testSlowBuildDoesNotBlockOtherKeys() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+
+		this.agentRegistry.agentFactory = (location, identity, fetchRootKey, verify, transportType) -> {
+			this.builds.incrementAndGet();
+
+			// only the local replica is slow, e.g. fetching its root key
+			if (location.equals(LOCAL))
+				await(release);
+
+			return this.agentRegistry.createAgent(location, identity, fetchRootKey, verify, transportType);
+		};
+
+		try {
+			CompletableFuture<Agent> local = CompletableFuture.supplyAsync(() -> this.getAgent(LOCAL));
+
+			await(() -> this.builds.get() == 1);
+
+			Assertions.assertNotNull(this.getAgent(MAINNET));
+			Assertions.assertFalse(local.isDone());
+
+			release.countDown();
+
+			Assertions.assertNotNull(local.get(5, TimeUnit.SECONDS));
+			Assertions.assertEquals(2, this.agentRegistry.size());
+		} finally {
+			release.countDown();
+			this.agentRegistry.destroy();
+		}
+	}
+
+	@Test
+	public void testFailedBuildRetried() throws URISyntaxException {
+		this.agentRegistry.agentFactory = (location, identity, fetchRootKey, verify, transportType) -> {
+			if (this.builds.incrementAndGet() == 1)
+				throw new IllegalStateException("replica unavailable");
+
+			return this.agentRegistry.createAgent(location, identity, fetchRootKey, verify, transportType);
+		};
+
+		try {
+			Assertions.assertThrows(IllegalStateException.class, () -> this.getAgent(LOCAL));
+			Assertions.assertEquals(0, this.agentRegistry.size());
+
+			Agent agent = this.agentRegistry.getAgent(LOCAL, new AnonymousIdentity(), false);
+
+			Assertions.assertSame(agent, this.agentRegistry.getAgent(LOCAL, new AnonymousIdentity(), false));
+			Assertions.assertEquals(2, this.builds.get());
+		} finally {
+			this.agentRegistry.destroy();
+		}
+	}
+
+	Agent getAgent(String location) {
+		try {
+			return this.agentRegistry.getAgent(location, new AnonymousIdentity(), false);
+		} catch (URISyntaxException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static void await(CountDownLatch latch) {
+		try {
+			if (!latch.await(5, TimeUnit.SECONDS))
+				throw new IllegalStateException("Build was not released");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > deadline)
+				Assertions.fail("Timed out waiting for the agent build");
+
+			Thread.sleep(5);
+		}
+	}
+}
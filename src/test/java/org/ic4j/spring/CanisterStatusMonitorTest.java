@@ -0,0 +1,215 @@
+package org.ic4j.spring;
+
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.ic4j.management.CanisterStatusRequest;
+import org.ic4j.management.CanisterStatusResponse;
+import org.ic4j.management.ManagementProxy;
+import org.ic4j.types.Principal;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+public class CanisterStatusMonitorTest {
+	static final List<Principal> CANISTER_IDS = Arrays.asList(Principal.fromString("rrkah-fqaaa-aaaaa-aaaaq-cai"),
+			Principal.fromString("ryjl3-tyaaa-aaaaa-aaaba-cai"), Principal.fromString("r7inp-6aaaa-aaaaa-aaabq-cai"),
+			Principal.fromString("rkp4c-7iaaa-aaaaa-aaaca-cai"), Principal.fromString("rno2w-sqaaa-aaaaa-aaacq-cai"));
+
+	final List<Principal> polled = new CopyOnWriteArrayList<Principal>();
+
+	final Map<Principal, CompletableFuture<CanisterStatusResponse>> pending = new ConcurrentHashMap<Principal, CompletableFuture<CanisterStatusResponse>>();
+
+	final AtomicInteger inFlight = new AtomicInteger();
+
+	final AtomicInteger maxInFlight = new AtomicInteger();
+
+	final List<CanisterStatusEvent> events = new CopyOnWriteArrayList<CanisterStatusEvent>();
+
+	volatile boolean deferred = true;
+
+	volatile BigInteger cycles = BigInteger.valueOf(5000);
+
+	@Test
+	public void testConcurrencyLimit() throws InterruptedException {
+		CanisterStatusMonitor monitor = this.monitor(2, 5000, CANISTER_IDS);
+
+		Thread round = new Thread(monitor::refresh);
+		round.start();
+
+		await(() -> this.pending.size() == 2);
+
+		// each completed call lets the next canister through
+		for (int i = 0; i < CANISTER_IDS.size(); i++) {
+			int completed = i;
+
+			await(() -> this.polled.size() > completed);
+
+			this.respond(this.polled.get(i), BigInteger.ONE);
+		}
+
+		round.join(5000);
+
+		Assertions.assertFalse(round.isAlive());
+		Assertions.assertEquals(2, this.maxInFlight.get());
+		Assertions.assertEquals(CANISTER_IDS.size(), monitor.getSnapshot().size());
+	}
+
+	@Test
+	public void testTimeoutCarriesOver() {
+		CanisterStatusMonitor monitor = this.monitor(1, 50, CANISTER_IDS.subList(0, 3));
+
+		// the first call does not complete within the round
+		monitor.refresh();
+
+		Assertions.assertEquals(1, this.polled.size());
+
+		Principal slow = this.polled.get(0);
+		List<Principal> unpolled = new ArrayList<Principal>(monitor.unpolled);
+
+		Assertions.assertEquals(2, unpolled.size());
+		Assertions.assertFalse(unpolled.contains(slow));
+
+		this.respond(slow, BigInteger.ONE);
+		this.deferred = false;
+
+		monitor.refresh();
+
+		// canisters the timed out round did not reach go first
+		Assertions.assertEquals(Arrays.asList(slow, unpolled.get(0), unpolled.get(1), slow), this.polled);
+		Assertions.assertTrue(monitor.unpolled.isEmpty());
+	}
+
+	@Test
+	public void testPermitsSharedAcrossRounds() {
+		CanisterStatusMonitor monitor = this.monitor(1, 50, CANISTER_IDS.subList(0, 2));
+
+		monitor.refresh();
+
+		Principal slow = this.polled.get(0);
+		Principal other = monitor.unpolled.get(0);
+
+		// the slow call still holds the only permit, the other canister waits for the next round
+		monitor.refresh();
+
+		Assertions.assertEquals(1, this.polled.size());
+		Assertions.assertEquals(1, this.maxInFlight.get());
+		Assertions.assertEquals(other, monitor.unpolled.get(0));
+
+		this.respond(slow, BigInteger.ONE);
+		this.deferred = false;
+
+		monitor.refresh();
+
+		Assertions.assertEquals(Arrays.asList(slow, other, slow), this.polled);
+		Assertions.assertTrue(monitor.unpolled.isEmpty());
+		Assertions.assertEquals(2, monitor.getSnapshot().size());
+		Assertions.assertEquals(1, this.maxInFlight.get());
+	}
+
+	@Test
+	public void testUnregisteredNotCarriedOver() {
+		CanisterStatusMonitor monitor = this.monitor(1, 50, CANISTER_IDS.subList(0, 3));
+
+		monitor.refresh();
+
+		Principal slow = this.polled.get(0);
+
+		for (Principal canisterId : monitor.unpolled)
+			monitor.unregister(canisterId);
+
+		this.respond(slow, BigInteger.ONE);
+		this.deferred = false;
+
+		monitor.refresh();
+
+		Assertions.assertEquals(Arrays.asList(slow, slow), this.polled);
+	}
+
+	@Test
+	public void testCyclesLowPublishedOnce() {
+		this.deferred = false;
+
+		CanisterStatusMonitor monitor = this.monitor(2, 5000, CANISTER_IDS.subList(0, 1));
+		monitor.setCyclesThreshold(BigInteger.valueOf(1000));
+
+		monitor.refresh();
+
+		Assertions.assertTrue(this.events.isEmpty());
+
+		this.cycles = BigInteger.valueOf(999);
+
+		monitor.refresh();
+		monitor.refresh();
+
+		Assertions.assertEquals(1, this.events.size());
+		Assertions.assertEquals(CanisterStatusEvent.Type.CYCLES_LOW, this.events.get(0).getType());
+		Assertions.assertEquals(CANISTER_IDS.get(0), this.events.get(0).getCanisterId());
+	}
+
+	CanisterStatusMonitor monitor(int concurrency, long timeout, List<Principal> canisterIds) {
+		ManagementProxy managementProxy = (ManagementProxy) Proxy.newProxyInstance(ManagementProxy.class.getClassLoader(),
+				new Class<?>[] { ManagementProxy.class }, (proxy, method, args) -> {
+					if (!method.getName().equals("canisterStatus"))
+						throw new UnsupportedOperationException(method.getName());
+
+					Principal canisterId = ((CanisterStatusRequest) args[0]).canisterId;
+
+					this.polled.add(canisterId);
+
+					if (!this.deferred)
+						return CompletableFuture.completedFuture(status(this.cycles));
+
+					this.maxInFlight.accumulateAndGet(this.inFlight.incrementAndGet(), Math::max);
+
+					CompletableFuture<CanisterStatusResponse> response = new CompletableFuture<CanisterStatusResponse>();
+					this.pending.put(canisterId, response);
+
+					return response.whenComplete((status, ex) -> this.inFlight.decrementAndGet());
+				});
+
+		MockEnvironment env = new MockEnvironment();
+		env.setProperty("ic.statusMonitor.concurrency", String.valueOf(concurrency));
+		env.setProperty("ic.statusMonitor.timeout", String.valueOf(timeout));
+
+		CanisterStatusMonitor monitor = new CanisterStatusMonitor(new ManagementService(managementProxy, null, 1),
+				event -> this.events.add((CanisterStatusEvent) event), env);
+
+		for (Principal canisterId : canisterIds)
+			monitor.register(canisterId);
+
+		return monitor;
+	}
+
+	void respond(Principal canisterId, BigInteger cycles) {
+		this.pending.remove(canisterId).complete(status(cycles));
+	}
+
+	static CanisterStatusResponse status(BigInteger cycles) {
+		CanisterStatusResponse status = new CanisterStatusResponse();
+		status.cycles = cycles;
+		status.memorySize = BigInteger.ZERO;
+
+		return status;
+	}
+
+	static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > deadline)
+				Assertions.fail("Timed out waiting for status calls");
+
+			Thread.sleep(5);
+		}
+	}
+}
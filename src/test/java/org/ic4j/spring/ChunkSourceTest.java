@@ -0,0 +1,298 @@
+package org.ic4j.spring;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ic4j.management.Mode;
+import org.ic4j.types.Principal;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ChunkSourceTest {
+	static final Principal CANISTER_ID = Principal.fromString("ryjl3-tyaaa-aaaaa-aaaba-cai");
+
+	@Test
+	public void testModuleChunks() throws IOException {
+		// two full chunks and a partial one
+		byte[] bytes = module(2 * ManagementService.CHUNK_SIZE + 1000, 1);
+
+		WasmModule wasmModule = WasmModule.of(bytes);
+
+		Assertions.assertEquals(3, wasmModule.getChunkCount());
+		Assertions.assertArrayEquals(sha256(bytes), wasmModule.getHash());
+
+		ChunkSource chunkSource = ChunkSource.of(wasmModule);
+
+		List<byte[]> chunks = drain(chunkSource);
+
+		Assertions.assertEquals(3, chunks.size());
+		Assertions.assertEquals(ManagementService.CHUNK_SIZE, chunks.get(0).length);
+		Assertions.assertEquals(ManagementService.CHUNK_SIZE, chunks.get(1).length);
+		Assertions.assertEquals(1000, chunks.get(2).length);
+		Assertions.assertArrayEquals(bytes, concat(chunks));
+
+		ChunkHash[] chunkHashes = chunkSource.getChunkHashes();
+
+		for (int i = 0; i < chunks.size(); i++)
+			Assertions.assertArrayEquals(sha256(chunks.get(i)), chunkHashes[i].hash);
+
+		// computed once and shared between installations
+		Assertions.assertSame(chunkHashes, wasmModule.getChunkHashes());
+	}
+
+	@Test
+	public void testStreamMatchesModule() throws IOException {
+		byte[] bytes = module(ManagementService.CHUNK_SIZE * 2 + 17, 2);
+
+		ChunkSource moduleSource = ChunkSource.of(WasmModule.of(bytes));
+		ChunkSource streamSource = ChunkSource.of(new TrickleInputStream(bytes, 4096));
+
+		drain(moduleSource);
+
+		List<byte[]> chunks = drain(streamSource);
+
+		// short reads still fill whole chunks
+		Assertions.assertEquals(3, chunks.size());
+		Assertions.assertEquals(ManagementService.CHUNK_SIZE, chunks.get(0).length);
+		Assertions.assertArrayEquals(moduleSource.getHash(), streamSource.getHash());
+
+		ChunkHash[] moduleHashes = moduleSource.getChunkHashes();
+		ChunkHash[] streamHashes = streamSource.getChunkHashes();
+
+		Assertions.assertEquals(moduleHashes.length, streamHashes.length);
+
+		for (int i = 0; i < moduleHashes.length; i++)
+			Assertions.assertArrayEquals(moduleHashes[i].hash, streamHashes[i].hash);
+
+		Assertions.assertNull(streamSource.next());
+	}
+
+	@Test
+	public void testEmptyStream() throws IOException {
+		ChunkSource chunkSource = ChunkSource.of(new ByteArrayInputStream(new byte[0]));
+
+		Assertions.assertNull(chunkSource.next());
+		Assertions.assertEquals(0, chunkSource.getChunkHashes().length);
+		Assertions.assertArrayEquals(sha256(new byte[0]), chunkSource.getHash());
+	}
+
+	@Test
+	public void testStoredChunksSkipped() {
+		byte[] bytes = module(3 * ManagementService.CHUNK_SIZE, 3);
+
+		WasmModule wasmModule = WasmModule.of(bytes);
+
+		TestChunkedCodeProxy chunkedCodeProxy = new TestChunkedCodeProxy();
+		chunkedCodeProxy.stored = new ChunkHash[] { wasmModule.getChunkHashes()[1] };
+
+		ManagementService managementService = new ManagementService(null, chunkedCodeProxy, 2);
+
+		managementService.installChunkedCode(CANISTER_ID, Mode.install, wasmModule, null, 2).join();
+
+		Assertions.assertEquals(2, chunkedCodeProxy.uploaded.size());
+		Assertions.assertArrayEquals(wasmModule.getChunk(0), chunkedCodeProxy.uploaded.get(0));
+		Assertions.assertArrayEquals(wasmModule.getChunk(2), chunkedCodeProxy.uploaded.get(1));
+
+		InstallChunkedCodeRequest installRequest = chunkedCodeProxy.installed;
+
+		// the installation still lists every chunk, in module order
+		Assertions.assertSame(CANISTER_ID, installRequest.targetCanister);
+		Assertions.assertEquals(3, installRequest.chunkHashesList.length);
+		Assertions.assertArrayEquals(wasmModule.getHash(), installRequest.wasmModuleHash);
+		Assertions.assertEquals(0, installRequest.arg.length);
+	}
+
+	@Test
+	public void testRepeatedChunkUploadedOnce() {
+		byte[] chunk = module(ManagementService.CHUNK_SIZE, 4);
+		byte[] bytes = concat(Arrays.asList(chunk, chunk, new byte[] { 1, 2, 3 }));
+
+		TestChunkedCodeProxy chunkedCodeProxy = new TestChunkedCodeProxy();
+
+		ManagementService managementService = new ManagementService(null, chunkedCodeProxy, 4);
+
+		managementService.installChunkedCode(CANISTER_ID, Mode.install, new ByteArrayInputStream(bytes), null, 4).join();
+
+		Assertions.assertEquals(2, chunkedCodeProxy.uploaded.size());
+		Assertions.assertEquals(3, chunkedCodeProxy.installed.chunkHashesList.length);
+		Assertions.assertArrayEquals(sha256(bytes), chunkedCodeProxy.installed.wasmModuleHash);
+	}
+
+	@Test
+	public void testUploadConcurrency() {
+		WasmModule wasmModule = WasmModule.of(module(5 * ManagementService.CHUNK_SIZE, 5));
+
+		TestChunkedCodeProxy chunkedCodeProxy = new TestChunkedCodeProxy();
+		chunkedCodeProxy.deferUploads = true;
+
+		ManagementService managementService = new ManagementService(null, chunkedCodeProxy, 2);
+
+		CompletableFuture<Void> response = managementService.installChunkedCode(CANISTER_ID, Mode.install, wasmModule, null, 2);
+
+		Assertions.assertEquals(2, chunkedCodeProxy.pending.size());
+
+		// each completed upload starts the next one
+		for (int i = 0; i < 5; i++)
+			chunkedCodeProxy.pending.get(i).complete(null);
+
+		response.join();
+
+		Assertions.assertEquals(5, chunkedCodeProxy.uploaded.size());
+		Assertions.assertEquals(2, chunkedCodeProxy.maxInFlight.get());
+		Assertions.assertNotNull(chunkedCodeProxy.installed);
+	}
+
+	@Test
+	public void testUploadFailure() {
+		WasmModule wasmModule = WasmModule.of(module(3 * ManagementService.CHUNK_SIZE, 6));
+
+		TestChunkedCodeProxy chunkedCodeProxy = new TestChunkedCodeProxy();
+		chunkedCodeProxy.failUpload = 1;
+
+		ManagementService managementService = new ManagementService(null, chunkedCodeProxy, 1);
+
+		CompletableFuture<Void> response = managementService.installChunkedCode(CANISTER_ID, Mode.install, wasmModule, null, 1);
+
+		Assertions.assertTrue(response.isCompletedExceptionally());
+		Assertions.assertEquals(2, chunkedCodeProxy.uploaded.size());
+		Assertions.assertNull(chunkedCodeProxy.installed, "install_chunked_code is not called after a failed upload");
+	}
+
+	static List<byte[]> drain(ChunkSource chunkSource) throws IOException {
+		List<byte[]> chunks = new ArrayList<byte[]>();
+		ChunkSource.Chunk chunk;
+
+		while ((chunk = chunkSource.next()) != null) {
+			Assertions.assertArrayEquals(sha256(chunk.bytes), chunk.hash.hash);
+
+			chunks.add(chunk.bytes);
+		}
+
+		return chunks;
+	}
+
+	static byte[] module(int size, long seed) {
+		byte[] bytes = new byte[size];
+
+		new Random(seed).nextBytes(bytes);
+
+		return bytes;
+	}
+
+	static byte[] concat(List<byte[]> chunks) {
+		int length = 0;
+
+		for (byte[] chunk : chunks)
+			length += chunk.length;
+
+		byte[] bytes = new byte[length];
+		int offset = 0;
+
+		for (byte[] chunk : chunks) {
+			System.arraycopy(chunk, 0, bytes, offset, chunk.length);
+			offset += chunk.length;
+		}
+
+		return bytes;
+	}
+
+	static byte[] sha256(byte[] bytes) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(bytes);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static final class TrickleInputStream extends InputStream {
+		final ByteArrayInputStream inputStream;
+
+		final int maxRead;
+
+		TrickleInputStream(byte[] bytes, int maxRead) {
+			this.inputStream = new ByteArrayInputStream(bytes);
+			this.maxRead = maxRead;
+		}
+
+		@Override
+		public int read() {
+			return this.inputStream.read();
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			return this.inputStream.read(bytes, offset, Math.min(length, this.maxRead));
+		}
+	}
+
+	static final class TestChunkedCodeProxy implements ChunkedCodeProxy {
+		final List<byte[]> uploaded = new CopyOnWriteArrayList<byte[]>();
+
+		final List<CompletableFuture<ChunkHash>> pending = new CopyOnWriteArrayList<CompletableFuture<ChunkHash>>();
+
+		final AtomicInteger inFlight = new AtomicInteger();
+
+		final AtomicInteger maxInFlight = new AtomicInteger();
+
+		ChunkHash[] stored = new ChunkHash[0];
+
+		boolean deferUploads;
+
+		int failUpload = -1;
+
+		volatile InstallChunkedCodeRequest installed;
+
+		@Override
+		public CompletableFuture<ChunkHash> uploadChunk(UploadChunkRequest request) {
+			int index = this.uploaded.size();
+
+			this.uploaded.add(request.chunk);
+
+			CompletableFuture<ChunkHash> response = new CompletableFuture<ChunkHash>();
+
+			if (index == this.failUpload) {
+				response.completeExceptionally(new IllegalStateException("upload rejected"));
+
+				return response;
+			}
+
+			if (!this.deferUploads) {
+				response.complete(null);
+
+				return response;
+			}
+
+			this.maxInFlight.accumulateAndGet(this.inFlight.incrementAndGet(), Math::max);
+			this.pending.add(response);
+
+			return response.whenComplete((value, ex) -> this.inFlight.decrementAndGet());
+		}
+
+		@Override
+		public CompletableFuture<ChunkHash[]> storedChunks(StoredChunksRequest request) {
+			return CompletableFuture.completedFuture(this.stored);
+		}
+
+		@Override
+		public CompletableFuture<Void> clearChunkStore(StoredChunksRequest request) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		@Override
+		public CompletableFuture<Void> installChunkedCode(InstallChunkedCodeRequest request) {
+			this.installed = request;
+
+			return CompletableFuture.completedFuture(null);
+		}
+	}
+}
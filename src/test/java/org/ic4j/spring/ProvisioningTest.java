@@ -0,0 +1,219 @@
+package org.ic4j.spring;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ic4j.management.CreateCanisterResponse;
+import org.ic4j.management.InstallCodeRequest;
+import org.ic4j.management.ManagementProxy;
+import org.ic4j.management.StartCanisterRequest;
+import org.ic4j.types.Principal;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ProvisioningTest {
+	static final String[] CANISTER_IDS = { "rrkah-fqaaa-aaaaa-aaaaq-cai", "ryjl3-tyaaa-aaaaa-aaaba-cai",
+			"r7inp-6aaaa-aaaaa-aaabq-cai", "rkp4c-7iaaa-aaaaa-aaaca-cai" };
+
+	final AtomicInteger created = new AtomicInteger();
+
+	final List<CompletableFuture<CreateCanisterResponse>> pendingCreates = new CopyOnWriteArrayList<CompletableFuture<CreateCanisterResponse>>();
+
+	final List<InstallCodeRequest> installed = new CopyOnWriteArrayList<InstallCodeRequest>();
+
+	final List<Principal> started = new CopyOnWriteArrayList<Principal>();
+
+	final List<String> progress = new CopyOnWriteArrayList<String>();
+
+	boolean deferCreates;
+
+	boolean failInstall;
+
+	@Test
+	public void testPipeline() {
+		ManagementService managementService = this.managementService();
+
+		List<CanisterSpec> specs = Arrays.asList(new CanisterSpec("ledger", new byte[] { 1 }, null),
+				new CanisterSpec("index", new byte[] { 2 }, null), new CanisterSpec("frontend", null, null));
+
+		Map<String, ProvisioningResult> results = managementService.provisionFleet(specs, 2, null).join();
+
+		Assertions.assertEquals(Arrays.asList("ledger", "index", "frontend"), Arrays.asList(results.keySet().toArray()));
+
+		for (ProvisioningResult result : results.values()) {
+			Assertions.assertTrue(result.isSuccess());
+			Assertions.assertEquals(ProvisioningStage.STARTED, result.stage);
+			Assertions.assertTrue(this.started.contains(result.canisterId));
+		}
+
+		// a spec without a module is created and started only
+		Assertions.assertEquals(2, this.installed.size());
+		Assertions.assertEquals(3, this.started.size());
+	}
+
+	@Test
+	public void testParallelism() {
+		this.deferCreates = true;
+
+		ManagementService managementService = this.managementService();
+
+		List<CanisterSpec> specs = Arrays.asList(new CanisterSpec("a", null, null), new CanisterSpec("b", null, null),
+				new CanisterSpec("c", null, null));
+
+		CompletableFuture<Map<String, ProvisioningResult>> results = managementService.provisionFleet(specs, 2, null);
+
+		Assertions.assertEquals(2, this.pendingCreates.size());
+
+		this.complete(0);
+
+		Assertions.assertEquals(3, this.pendingCreates.size());
+
+		this.complete(1);
+		this.complete(2);
+
+		Assertions.assertEquals(3, results.join().size());
+	}
+
+	@Test
+	public void testWasmHashedOnce() {
+		ManagementService managementService = this.managementService();
+
+		// equal content in distinct arrays
+		List<CanisterSpec> specs = Arrays.asList(new CanisterSpec("a", new byte[] { 0, 97, 115, 109 }, null),
+				new CanisterSpec("b", new byte[] { 0, 97, 115, 109 }, null),
+				new CanisterSpec("c", new byte[] { 0, 97, 115, 109, 1 }, null));
+
+		Map<String, ProvisioningResult> results = managementService.provisionFleet(specs, 3, null).join();
+
+		Assertions.assertEquals(3, this.installed.size());
+
+		byte[] first = this.installed(results.get("a").canisterId);
+
+		// both specs were installed from the one WasmModule built for that content
+		Assertions.assertSame(first, this.installed(results.get("b").canisterId));
+		Assertions.assertNotSame(first, this.installed(results.get("c").canisterId));
+		Assertions.assertNotSame(specs.get(1).wasmModule, this.installed(results.get("b").canisterId));
+	}
+
+	@Test
+	public void testListenerStages() {
+		ManagementService managementService = this.managementService();
+
+		Map<String, ProvisioningResult> results = managementService
+				.provisionFleet(Arrays.asList(new CanisterSpec("ledger", new byte[] { 1 }, null)), 1, this::onProgress)
+				.join();
+
+		Assertions.assertEquals(Arrays.asList("ledger CREATED", "ledger CODE_INSTALLED", "ledger STARTED"), this.progress);
+		Assertions.assertTrue(results.get("ledger").isSuccess());
+	}
+
+	@Test
+	public void testFailedStage() {
+		this.failInstall = true;
+
+		ManagementService managementService = this.managementService();
+
+		ProvisioningResult result = managementService
+				.provisionFleet(Arrays.asList(new CanisterSpec("ledger", new byte[] { 1 }, null)), 1, this::onProgress)
+				.join().get("ledger");
+
+		Assertions.assertEquals(Arrays.asList("ledger CREATED", "ledger FAILED"), this.progress);
+		Assertions.assertEquals(ProvisioningStage.FAILED, result.stage);
+		Assertions.assertEquals(ProvisioningStage.CREATED, result.lastStage);
+		Assertions.assertNotNull(result.canisterId);
+		Assertions.assertEquals("install rejected", result.error.getMessage());
+		Assertions.assertTrue(this.started.isEmpty());
+	}
+
+	@Test
+	public void testFailingListener() {
+		ManagementService managementService = this.managementService();
+
+		ProvisioningResult result = managementService
+				.provisionFleet(Arrays.asList(new CanisterSpec("ledger", null, null)), 1, (name, stage, canisterId) -> {
+					throw new IllegalStateException("listener failed");
+				}).join().get("ledger");
+
+		Assertions.assertTrue(result.isSuccess());
+	}
+
+	@Test
+	public void testDuplicateNames() {
+		ManagementService managementService = this.managementService();
+
+		// an unnamed spec is keyed by its index
+		List<CanisterSpec> specs = Arrays.asList(new CanisterSpec("1", null, null), new CanisterSpec(null, null, null));
+
+		Assertions.assertThrows(IllegalArgumentException.class, () -> managementService.provisionFleet(specs, 2, null));
+		Assertions.assertEquals(0, this.created.get());
+
+		Assertions.assertThrows(IllegalArgumentException.class, () -> managementService.provisionFleet(
+				Arrays.asList(new CanisterSpec("a", null, null), new CanisterSpec("a", null, null)), 2, null));
+	}
+
+	ManagementService managementService() {
+		ManagementProxy managementProxy = (ManagementProxy) Proxy.newProxyInstance(ManagementProxy.class.getClassLoader(),
+				new Class<?>[] { ManagementProxy.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "createCanister":
+					case "provisionalCreateCanisterWithCycles":
+						return this.create();
+					case "installCode":
+						this.installed.add((InstallCodeRequest) args[0]);
+
+						CompletableFuture<Void> response = new CompletableFuture<Void>();
+
+						if (this.failInstall)
+							response.completeExceptionally(new IllegalStateException("install rejected"));
+						else
+							response.complete(null);
+
+						return response;
+					case "startCanister":
+						this.started.add(((StartCanisterRequest) args[0]).canisterId);
+
+						return CompletableFuture.completedFuture(null);
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+
+		return new ManagementService(managementProxy, null, 1);
+	}
+
+	CompletableFuture<CreateCanisterResponse> create() {
+		CompletableFuture<CreateCanisterResponse> response = new CompletableFuture<CreateCanisterResponse>();
+
+		this.created.incrementAndGet();
+		this.pendingCreates.add(response);
+
+		if (!this.deferCreates)
+			this.complete(this.pendingCreates.size() - 1);
+
+		return response;
+	}
+
+	void complete(int index) {
+		CreateCanisterResponse createCanisterResponse = new CreateCanisterResponse();
+		createCanisterResponse.canisterId = Principal.fromString(CANISTER_IDS[index]);
+
+		this.pendingCreates.get(index).complete(createCanisterResponse);
+	}
+
+	byte[] installed(Principal canisterId) {
+		for (InstallCodeRequest installCodeRequest : this.installed)
+			if (canisterId.equals(installCodeRequest.canisterId))
+				return installCodeRequest.wasmModule;
+
+		return null;
+	}
+
+	void onProgress(String name, ProvisioningStage stage, Principal canisterId) {
+		this.progress.add(name + " " + stage);
+	}
+}
@@ -0,0 +1,223 @@
+package org.ic4j.spring;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ic4j.agent.identity.Identity;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.mock.env.MockEnvironment;
+
+public class ServiceWarmupTest {
+
+	@Test
+	public void testEagerInit() throws Exception {
+		TestService service = new TestService();
+		service.start(false);
+
+		Assertions.assertEquals(1, service.initialized.get());
+
+		service.warmUp();
+
+		Assertions.assertEquals(1, service.initialized.get());
+	}
+
+	@Test
+	public void testLazyInit() throws Exception {
+		TestService service = new TestService();
+		service.start(true);
+
+		Assertions.assertEquals(0, service.initialized.get());
+
+		service.warmUp();
+		service.warmUp();
+
+		Assertions.assertEquals(1, service.initialized.get());
+	}
+
+	@Test
+	public void testLazyInitProperty() throws Exception {
+		MockEnvironment env = new MockEnvironment();
+		env.setProperty("ic.lazyInit", "true");
+
+		TestService service = new TestService();
+		service.env = env;
+		service.start(false);
+
+		Assertions.assertEquals(0, service.initialized.get());
+	}
+
+	@Test
+	public void testConcurrentWarmUp() throws Exception {
+		TestService service = new TestService();
+		service.gate = new CountDownLatch(1);
+		service.start(true);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+
+			for (int i = 0; i < 4; i++)
+				futures.add(executor.submit(service::warmUp));
+
+			service.gate.countDown();
+
+			for (Future<?> future : futures)
+				future.get(5, TimeUnit.SECONDS);
+
+			Assertions.assertEquals(1, service.initialized.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testFailedInitRetried() throws Exception {
+		TestService service = new TestService();
+		service.failures = 1;
+		service.start(true);
+
+		Assertions.assertThrows(RuntimeException.class, service::warmUp);
+
+		service.warmUp();
+
+		Assertions.assertEquals(2, service.initialized.get());
+		Assertions.assertNull(service.pendingInit);
+	}
+
+	@Test
+	public void testWarmUpAllServices() throws Exception {
+		StaticApplicationContext context = new StaticApplicationContext();
+
+		TestService ledger = new TestService();
+		TestService index = new TestService();
+		TestService failing = new TestService();
+		failing.failures = Integer.MAX_VALUE;
+
+		for (TestService service : new TestService[] { ledger, index, failing })
+			service.start(true);
+
+		context.getBeanFactory().registerSingleton("ledger", ledger);
+		context.getBeanFactory().registerSingleton("index", index);
+		context.getBeanFactory().registerSingleton("failing", failing);
+		context.refresh();
+
+		try {
+			ServiceWarmup serviceWarmup = new ServiceWarmup(null);
+			serviceWarmup.onApplicationEvent(new ContextRefreshedEvent(context));
+
+			// a failing bean doesn't keep the others from initializing
+			Assertions.assertEquals(1, ledger.initialized.get());
+			Assertions.assertEquals(1, index.initialized.get());
+			Assertions.assertNotNull(failing.pendingInit);
+
+			Assertions.assertTrue(serviceWarmup.getTimings().containsKey("ledger"));
+			Assertions.assertTrue(serviceWarmup.getTimings().containsKey("index"));
+			Assertions.assertFalse(serviceWarmup.getTimings().containsKey("failing"));
+		} finally {
+			context.close();
+		}
+	}
+
+	@Test
+	public void testWarmUpConcurrency() throws Exception {
+		MockEnvironment env = new MockEnvironment();
+		env.setProperty("ic.warmup.concurrency", "2");
+
+		StaticApplicationContext context = new StaticApplicationContext();
+
+		// every initialization waits for a second one running alongside it
+		CyclicBarrier barrier = new CyclicBarrier(2);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+
+		List<TestService> services = new ArrayList<TestService>();
+
+		for (int i = 0; i < 4; i++) {
+			TestService service = new TestService();
+			service.barrier = barrier;
+			service.running = running;
+			service.maxRunning = maxRunning;
+			service.start(true);
+
+			services.add(service);
+			context.getBeanFactory().registerSingleton("service" + i, service);
+		}
+
+		context.refresh();
+
+		try {
+			new ServiceWarmup(env).onApplicationEvent(new ContextRefreshedEvent(context));
+
+			for (TestService service : services)
+				Assertions.assertEquals(1, service.initialized.get());
+
+			Assertions.assertEquals(2, maxRunning.get());
+		} finally {
+			context.close();
+		}
+	}
+
+	static final class TestService extends Service {
+		final AtomicInteger initialized = new AtomicInteger();
+
+		volatile int failures;
+
+		CountDownLatch gate;
+
+		CyclicBarrier barrier;
+
+		AtomicInteger running = new AtomicInteger();
+
+		AtomicInteger maxRunning = new AtomicInteger();
+
+		TestService() {
+			super(null);
+		}
+
+		void start(boolean lazyInit) throws URISyntaxException, IOException {
+			this.lazyInit = lazyInit;
+
+			this.init(Runnable.class, "http://127.0.0.1:4943/", null, null, null);
+		}
+
+		@Override
+		void initialize(Class<?> clazz, String location, String canisterId, String effectiveCanisterId, Identity identity)
+				throws URISyntaxException, IOException {
+			this.initialized.incrementAndGet();
+			this.maxRunning.accumulateAndGet(this.running.incrementAndGet(), Math::max);
+
+			try {
+				if (this.gate != null)
+					this.gate.await(5, TimeUnit.SECONDS);
+
+				if (this.barrier != null)
+					this.barrier.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+				throw new IllegalStateException(e);
+			} finally {
+				this.running.decrementAndGet();
+			}
+
+			if (this.failures > 0) {
+				this.failures--;
+
+				throw new IOException("identity file not found");
+			}
+		}
+	}
+}
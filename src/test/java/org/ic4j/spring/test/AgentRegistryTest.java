@@ -0,0 +1,60 @@
+package org.ic4j.spring.test;
+
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+
+import org.ic4j.agent.Agent;
+import org.ic4j.agent.identity.AnonymousIdentity;
+import org.ic4j.agent.identity.BasicIdentity;
+import org.ic4j.spring.AgentRegistry;
+import org.ic4j.spring.TransportType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AgentRegistryTest {
+
+    @Test
+    public void test() throws URISyntaxException
+    {
+		AgentRegistry agentRegistry = new AgentRegistry(null);
+
+		Agent anonymousAgent = agentRegistry.getAgent("http://127.0.0.1:4943/", new AnonymousIdentity(), false);
+
+		Assertions.assertSame(anonymousAgent, agentRegistry.getAgent("http://127.0.0.1:4943/", new AnonymousIdentity(), false));
+		Assertions.assertSame(anonymousAgent, agentRegistry.getAgent("http://127.0.0.1:4943/", null, false));
+
+		BasicIdentity identity = BasicIdentity.fromPEMFile(Paths.get("Ed25519_identity.pem"));
+
+		Assertions.assertNotSame(anonymousAgent, agentRegistry.getAgent("http://127.0.0.1:4943/", identity, false));
+		Assertions.assertNotSame(anonymousAgent, agentRegistry.getAgent("https://icp-api.io", new AnonymousIdentity(), false));
+
+		Assertions.assertNotSame(anonymousAgent, agentRegistry.getAgent("http://127.0.0.1:4943/", null, false, false, TransportType.JAVA11));
+
+		Assertions.assertEquals(4, agentRegistry.size());
+
+		agentRegistry.clear();
+
+		Assertions.assertEquals(0, agentRegistry.size());
+		Assertions.assertNotSame(anonymousAgent, agentRegistry.getAgent("http://127.0.0.1:4943/", null, false));
+
+		agentRegistry.destroy();
+    }
+
+    @Test
+    public void testDefaultRegistry() throws URISyntaxException
+    {
+		AgentRegistry defaultRegistry = AgentRegistry.getDefault();
+
+		Assertions.assertSame(defaultRegistry, AgentRegistry.getDefault(null));
+
+		defaultRegistry.getAgent("http://127.0.0.1:4943/", null, false);
+
+		AgentRegistry.closeDefault();
+
+		Assertions.assertEquals(0, defaultRegistry.size());
+		Assertions.assertNotSame(defaultRegistry, AgentRegistry.getDefault());
+
+		AgentRegistry.closeDefault();
+		AgentRegistry.closeDefault();
+    }
+}
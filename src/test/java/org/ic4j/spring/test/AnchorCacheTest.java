@@ -0,0 +1,129 @@
+package org.ic4j.spring.test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ic4j.internetidentity.AnchorCredentials;
+import org.ic4j.internetidentity.DeviceData;
+import org.ic4j.spring.AnchorCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AnchorCacheTest {
+	static final Long USER_NUMBER = 10001L;
+
+	final TestClock clock = new TestClock(1700000000000L);
+
+	@Test
+	public void testExpiry() {
+		AnchorCache anchorCache = new AnchorCache(1000, 10, this.clock);
+
+		AtomicInteger lookups = new AtomicInteger();
+
+		DeviceData[] devices = anchorCache.getDevices(USER_NUMBER, () -> lookup(lookups));
+
+		this.clock.advance(999);
+
+		Assertions.assertSame(devices, anchorCache.getDevices(USER_NUMBER, () -> lookup(lookups)));
+		Assertions.assertEquals(1, lookups.get());
+
+		this.clock.advance(1);
+
+		Assertions.assertNotSame(devices, anchorCache.getDevices(USER_NUMBER, () -> lookup(lookups)));
+		Assertions.assertEquals(2, lookups.get());
+		Assertions.assertEquals(1, anchorCache.getHits());
+		Assertions.assertEquals(2, anchorCache.getMisses());
+	}
+
+	@Test
+	public void testCredentialsExpireSeparately() {
+		AnchorCache anchorCache = new AnchorCache(1000, 10, this.clock);
+
+		AnchorCredentials credentials = anchorCache.getCredentials(USER_NUMBER, AnchorCredentials::new);
+
+		this.clock.advance(600);
+
+		DeviceData[] devices = anchorCache.getDevices(USER_NUMBER, () -> new DeviceData[0]);
+
+		this.clock.advance(600);
+
+		// credentials were stored 1200 ms ago, devices 600 ms ago
+		Assertions.assertNotSame(credentials, anchorCache.getCredentials(USER_NUMBER, AnchorCredentials::new));
+		Assertions.assertSame(devices, anchorCache.getDevices(USER_NUMBER, () -> new DeviceData[0]));
+		Assertions.assertEquals(1, anchorCache.size());
+	}
+
+	@Test
+	public void testMaxSize() {
+		AnchorCache anchorCache = new AnchorCache(60000, 2, this.clock);
+
+		AtomicInteger lookups = new AtomicInteger();
+
+		anchorCache.getDevices(1L, () -> lookup(lookups));
+		anchorCache.getDevices(2L, () -> lookup(lookups));
+
+		// touch the first anchor so the second is the least recently used
+		anchorCache.getDevices(1L, () -> lookup(lookups));
+		anchorCache.getDevices(3L, () -> lookup(lookups));
+
+		Assertions.assertEquals(2, anchorCache.size());
+		Assertions.assertEquals(3, lookups.get());
+
+		anchorCache.getDevices(1L, () -> lookup(lookups));
+
+		Assertions.assertEquals(3, lookups.get());
+
+		anchorCache.getDevices(2L, () -> lookup(lookups));
+
+		Assertions.assertEquals(4, lookups.get());
+	}
+
+	@Test
+	public void testInvalidate() {
+		AnchorCache anchorCache = new AnchorCache(60000, 10, this.clock);
+
+		AtomicInteger lookups = new AtomicInteger();
+
+		anchorCache.getDevices(1L, () -> lookup(lookups));
+		anchorCache.getDevices(2L, () -> lookup(lookups));
+
+		anchorCache.invalidate(1L);
+
+		Assertions.assertEquals(1, anchorCache.size());
+
+		anchorCache.getDevices(1L, () -> lookup(lookups));
+		anchorCache.getDevices(2L, () -> lookup(lookups));
+
+		Assertions.assertEquals(3, lookups.get());
+
+		anchorCache.invalidateAll();
+
+		Assertions.assertEquals(0, anchorCache.size());
+	}
+
+	@Test
+	public void testInvalidateDuringLookup() {
+		AnchorCache anchorCache = new AnchorCache(60000, 10, this.clock);
+
+		AtomicInteger lookups = new AtomicInteger();
+
+		// the anchor changes while its lookup is in flight
+		anchorCache.getDevices(USER_NUMBER, () -> {
+			anchorCache.invalidate(USER_NUMBER);
+
+			return lookup(lookups);
+		});
+
+		Assertions.assertEquals(0, anchorCache.size(), "a stale reply is not stored");
+
+		anchorCache.getDevices(USER_NUMBER, () -> lookup(lookups));
+		anchorCache.getDevices(USER_NUMBER, () -> lookup(lookups));
+
+		Assertions.assertEquals(2, lookups.get());
+	}
+
+	static DeviceData[] lookup(AtomicInteger lookups) {
+		lookups.incrementAndGet();
+
+		return new DeviceData[] { new DeviceData() };
+	}
+}
@@ -0,0 +1,155 @@
+package org.ic4j.spring.test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ic4j.spring.BatchResult;
+import org.ic4j.spring.CallBatch;
+import org.ic4j.spring.Service;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CallBatchTest {
+
+	@Test
+	public void testResultsInAddOrder() throws InterruptedException {
+		TestService service = new TestService();
+
+		CompletableFuture<List<BatchResult>> results = service.batch().add("a").add("b").add("c").executeAsync();
+
+		service.pending.get("c").complete("C");
+		service.pending.get("b").complete("B");
+		service.pending.get("a").complete("A");
+
+		List<BatchResult> values = results.join();
+
+		Assertions.assertEquals("A", values.get(0).getValue());
+		Assertions.assertEquals("B", values.get(1).getValue());
+		Assertions.assertEquals("C", values.get(2).getValue());
+	}
+
+	@Test
+	public void testParallelismLimit() {
+		TestService service = new TestService();
+
+		CallBatch batch = service.batch().parallelism(2);
+
+		for (int i = 0; i < 5; i++)
+			batch.add("m" + i);
+
+		CompletableFuture<List<BatchResult>> results = batch.executeAsync();
+
+		Assertions.assertEquals(2, service.started.get());
+
+		service.pending.get("m0").complete(0);
+
+		Assertions.assertEquals(3, service.started.get());
+
+		for (int i = 1; i < 5; i++)
+			service.pending.get("m" + i).complete(i);
+
+		Assertions.assertEquals(5, results.join().size());
+		Assertions.assertEquals(2, service.maxInFlight.get());
+	}
+
+	@Test
+	public void testPartialFailure() {
+		TestService service = new TestService();
+
+		CompletableFuture<List<BatchResult>> results = service.batch().add("ok").add("failing").executeAsync();
+
+		service.pending.get("failing").completeExceptionally(new IllegalStateException("rejected"));
+		service.pending.get("ok").complete("value");
+
+		List<BatchResult> values = results.join();
+
+		Assertions.assertTrue(values.get(0).isSuccess());
+		Assertions.assertEquals("value", values.get(0).getValue());
+		Assertions.assertFalse(values.get(1).isSuccess());
+		Assertions.assertTrue(values.get(1).getError() instanceof IllegalStateException);
+	}
+
+	@Test
+	public void testSynchronousCompletion() throws InterruptedException {
+		TestService service = new TestService();
+		service.completeImmediately = true;
+
+		CallBatch batch = service.batch().parallelism(1);
+
+		for (int i = 0; i < 20000; i++)
+			batch.add("m" + i);
+
+		List<BatchResult> values = batch.execute();
+
+		Assertions.assertEquals(20000, values.size());
+		Assertions.assertEquals("m19999", values.get(19999).getValue());
+	}
+
+	@Test
+	public void testBlockingFallback() throws InterruptedException {
+		TestService service = new TestService();
+		service.unsupported = true;
+		service.setTaskExecutor(Runnable::run);
+
+		List<BatchResult> values = service.batch().add("generic").timeout(5, TimeUnit.SECONDS).execute();
+
+		Assertions.assertEquals("blocking generic", values.get(0).getValue());
+	}
+
+	static final class TestService extends Service {
+		final Map<String, CompletableFuture<Object>> pending = new ConcurrentHashMap<String, CompletableFuture<Object>>();
+
+		final AtomicInteger started = new AtomicInteger();
+
+		final AtomicInteger inFlight = new AtomicInteger();
+
+		final AtomicInteger maxInFlight = new AtomicInteger();
+
+		boolean completeImmediately;
+
+		boolean unsupported;
+
+		TestService() {
+			super(null);
+		}
+
+		@Override
+		public CallBatch batch() {
+			return super.batch();
+		}
+
+		@Override
+		protected <T> CompletableFuture<T> callAsync(String methodName, Object... args) {
+			CompletableFuture<Object> response = new CompletableFuture<Object>();
+
+			if (this.unsupported) {
+				response.completeExceptionally(new UnsupportedOperationException(methodName));
+
+				return (CompletableFuture<T>) response;
+			}
+
+			this.started.incrementAndGet();
+
+			if (this.completeImmediately) {
+				response.complete(methodName);
+
+				return (CompletableFuture<T>) response;
+			}
+
+			this.maxInFlight.accumulateAndGet(this.inFlight.incrementAndGet(), Math::max);
+
+			this.pending.put(methodName, response);
+
+			return (CompletableFuture<T>) response.whenComplete((value, ex) -> this.inFlight.decrementAndGet());
+		}
+
+		@Override
+		protected <T> T call(String methodName, Object... args) {
+			return (T) ("blocking " + methodName);
+		}
+	}
+}
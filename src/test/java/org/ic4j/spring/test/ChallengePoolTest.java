@@ -0,0 +1,147 @@
+package org.ic4j.spring.test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import javax.imageio.ImageIO;
+
+import org.ic4j.internetidentity.Challenge;
+import org.ic4j.spring.ChallengePool;
+import org.ic4j.spring.PreparedChallenge;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ChallengePoolTest {
+	final TestClock clock = new TestClock(1700000000000L);
+
+	final AtomicInteger created = new AtomicInteger();
+
+	@Test
+	public void testPrefilledAtConstruction() throws Exception {
+		ChallengePool challengePool = new ChallengePool(this::createChallenge, 3, 1, 60000, this.clock);
+
+		try {
+			Assertions.assertEquals(3, this.created.get());
+
+			await(() -> challengePool.size() == 3);
+
+			PreparedChallenge challenge = challengePool.take().get(5, TimeUnit.SECONDS);
+
+			Assertions.assertEquals("challenge-1", challenge.getChallenge().challengeKey);
+			Assertions.assertEquals(1, challengePool.getHits());
+			Assertions.assertEquals(0, challengePool.getMisses());
+		} finally {
+			challengePool.shutdown();
+		}
+	}
+
+	@Test
+	public void testRefillAtLowWaterMark() throws Exception {
+		ChallengePool challengePool = new ChallengePool(this::createChallenge, 4, 2, 60000, this.clock);
+
+		try {
+			await(() -> challengePool.size() == 4);
+
+			challengePool.take().get(5, TimeUnit.SECONDS);
+
+			// still above the low water mark
+			Assertions.assertEquals(4, this.created.get());
+
+			challengePool.take().get(5, TimeUnit.SECONDS);
+
+			Assertions.assertEquals(6, this.created.get());
+
+			await(() -> challengePool.size() == 4);
+
+			Assertions.assertEquals(2, challengePool.getHits());
+		} finally {
+			challengePool.shutdown();
+		}
+	}
+
+	@Test
+	public void testExpiredChallengesSkipped() throws Exception {
+		ChallengePool challengePool = new ChallengePool(this::createChallenge, 2, 0, 1000, this.clock);
+
+		try {
+			await(() -> challengePool.size() == 2);
+
+			this.clock.advance(1000);
+
+			PreparedChallenge challenge = challengePool.take().get(5, TimeUnit.SECONDS);
+
+			// both pooled challenges expired, the caller got a fresh one created inline
+			Assertions.assertEquals(2, challengePool.getExpired());
+			Assertions.assertEquals(0, challengePool.getHits());
+			Assertions.assertEquals(1, challengePool.getMisses());
+			Assertions.assertTrue(challenge.getExpiresAt() > this.clock.millis());
+			Assertions.assertTrue(this.created.get() > 2);
+		} finally {
+			challengePool.shutdown();
+		}
+	}
+
+	@Test
+	public void testCreationFailureReleasesSlot() throws Exception {
+		AtomicInteger attempts = new AtomicInteger();
+
+		ChallengePool challengePool = new ChallengePool(() -> {
+			CompletableFuture<Challenge> response = new CompletableFuture<Challenge>();
+
+			if (attempts.incrementAndGet() == 1)
+				response.completeExceptionally(new IllegalStateException("rejected"));
+			else
+				response.complete(challenge(attempts.get()));
+
+			return response;
+		}, 2, 1, 60000, this.clock);
+
+		try {
+			await(() -> challengePool.size() == 1);
+
+			challengePool.prefill();
+
+			await(() -> challengePool.size() == 2);
+
+			Assertions.assertEquals(3, attempts.get());
+		} finally {
+			challengePool.shutdown();
+		}
+	}
+
+	CompletableFuture<Challenge> createChallenge() {
+		return CompletableFuture.completedFuture(challenge(this.created.incrementAndGet()));
+	}
+
+	static Challenge challenge(int index) {
+		try {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			ImageIO.write(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB), "png", outputStream);
+
+			Challenge challenge = new Challenge();
+			challenge.challengeKey = "challenge-" + index;
+			challenge.pngBase64 = Base64.getEncoder().encodeToString(outputStream.toByteArray());
+
+			return challenge;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > deadline)
+				Assertions.fail("Timed out waiting for the pool");
+
+			Thread.sleep(5);
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package org.ic4j.spring.test;
+
+import java.util.Optional;
+
+import org.ic4j.internetidentity.GetDelegationResponse;
+import org.ic4j.internetidentity.PrepareDelegationResponse;
+import org.ic4j.spring.DelegationCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class DelegationCacheTest {
+	static final Long USER_NUMBER = 10001L;
+
+	static final String HOSTNAME = "https://example.com";
+
+	static final byte[] SESSION_KEY = { 1, 2, 3, 4 };
+
+	final TestClock clock = new TestClock(1700000000000L);
+
+	@Test
+	public void testSignedOnly() {
+		GetDelegationResponse signed = GetDelegationResponse.signed_delegation;
+		GetDelegationResponse noSuchDelegation = GetDelegationResponse.no_such_delegation;
+
+		DelegationCache delegationCache = new DelegationCache(0, 10, this.clock);
+
+		PrepareDelegationResponse prepared = prepared(60000);
+
+		delegationCache.putPrepared(USER_NUMBER, HOSTNAME, SESSION_KEY, Optional.empty(), prepared);
+		delegationCache.putDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, prepared.timestamp, noSuchDelegation);
+
+		Assertions.assertNull(delegationCache.getDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, Optional.empty(), null));
+		Assertions.assertNull(delegationCache.getPrepared(USER_NUMBER, HOSTNAME, SESSION_KEY, Optional.empty()),
+				"prepared delegations are reused only with their signed delegation");
+
+		delegationCache.putDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, prepared.timestamp, signed);
+
+		Assertions.assertSame(signed,
+				delegationCache.getDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, Optional.empty(), null));
+		Assertions.assertSame(prepared, delegationCache.getPrepared(USER_NUMBER, HOSTNAME, SESSION_KEY, Optional.empty()));
+		Assertions.assertSame(signed,
+				delegationCache.getDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY.clone(), null, prepared.timestamp));
+	}
+
+	@Test
+	public void testMaxTimeToLive() {
+		GetDelegationResponse signed = GetDelegationResponse.signed_delegation;
+
+		DelegationCache delegationCache = new DelegationCache(0, 10, this.clock);
+
+		PrepareDelegationResponse prepared = prepared(60000);
+
+		delegationCache.putPrepared(USER_NUMBER, HOSTNAME, SESSION_KEY, Optional.of(60000000000L), prepared);
+		delegationCache.putDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, prepared.timestamp, signed);
+
+		Assertions.assertNull(delegationCache.getPrepared(USER_NUMBER, HOSTNAME, SESSION_KEY, Optional.empty()));
+		Assertions.assertNull(delegationCache.getDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, Optional.of(1000L), null));
+		Assertions.assertSame(signed,
+				delegationCache.getDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, Optional.of(60000000000L), null));
+	}
+
+	@Test
+	public void testTimestampMismatch() {
+		GetDelegationResponse signed = GetDelegationResponse.signed_delegation;
+
+		DelegationCache delegationCache = new DelegationCache(0, 10, this.clock);
+
+		PrepareDelegationResponse prepared = prepared(60000);
+
+		delegationCache.putPrepared(USER_NUMBER, HOSTNAME, SESSION_KEY, Optional.empty(), prepared);
+
+		// a delegation for another timestamp expires at another time
+		delegationCache.putDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, prepared.timestamp + 1, signed);
+
+		Assertions.assertNull(delegationCache.getDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, Optional.empty(), null));
+
+		delegationCache.putDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, prepared.timestamp, signed);
+
+		Assertions.assertNull(delegationCache.getDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, null, prepared.timestamp - 1));
+		Assertions.assertSame(signed, delegationCache.getDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, null, prepared.timestamp));
+	}
+
+	@Test
+	public void testExpiry() {
+		GetDelegationResponse signed = GetDelegationResponse.signed_delegation;
+
+		// evicted one second before the delegation expires
+		DelegationCache delegationCache = new DelegationCache(1000, 10, this.clock);
+
+		PrepareDelegationResponse expiring = prepared(1300);
+
+		delegationCache.putPrepared(USER_NUMBER, HOSTNAME, SESSION_KEY, Optional.empty(), expiring);
+		delegationCache.putDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, expiring.timestamp, signed);
+
+		Assertions.assertSame(signed,
+				delegationCache.getDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, Optional.empty(), null));
+
+		this.clock.advance(300);
+
+		Assertions.assertNull(delegationCache.getDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, Optional.empty(), null));
+		Assertions.assertEquals(0, delegationCache.size());
+
+		// already inside the margin when prepared
+		PrepareDelegationResponse expired = prepared(1000);
+
+		delegationCache.putPrepared(USER_NUMBER, HOSTNAME, SESSION_KEY, Optional.empty(), expired);
+		delegationCache.putDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, expired.timestamp, signed);
+
+		Assertions.assertNull(delegationCache.getDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, Optional.empty(), null));
+	}
+
+	@Test
+	public void testInvalidate() {
+		GetDelegationResponse signed = GetDelegationResponse.signed_delegation;
+
+		DelegationCache delegationCache = new DelegationCache(0, 10, this.clock);
+
+		for (long userNumber = USER_NUMBER; userNumber < USER_NUMBER + 3; userNumber++) {
+			PrepareDelegationResponse prepared = prepared(60000);
+
+			delegationCache.putPrepared(userNumber, HOSTNAME, SESSION_KEY, Optional.empty(), prepared);
+			delegationCache.putDelegation(userNumber, HOSTNAME, SESSION_KEY, prepared.timestamp, signed);
+		}
+
+		Assertions.assertEquals(3, delegationCache.size());
+
+		delegationCache.invalidate(USER_NUMBER);
+
+		Assertions.assertNull(delegationCache.getDelegation(USER_NUMBER, HOSTNAME, SESSION_KEY, Optional.empty(), null));
+		Assertions.assertSame(signed,
+				delegationCache.getDelegation(USER_NUMBER + 1, HOSTNAME, SESSION_KEY, Optional.empty(), null));
+		Assertions.assertEquals(2, delegationCache.size());
+
+		delegationCache.invalidateAll();
+
+		Assertions.assertEquals(0, delegationCache.size());
+		Assertions.assertEquals(1, delegationCache.getHits());
+		Assertions.assertEquals(1, delegationCache.getMisses());
+	}
+
+	PrepareDelegationResponse prepared(long expiresIn) {
+		PrepareDelegationResponse prepared = new PrepareDelegationResponse();
+
+		prepared.userKey = new byte[] { 5, 6, 7 };
+		// delegation expiration in nanoseconds since the epoch
+		prepared.timestamp = (this.clock.millis() + expiresIn) * 1000000L;
+
+		return prepared;
+	}
+}
@@ -0,0 +1,301 @@
+package org.ic4j.spring.test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.ic4j.agent.ReplicaTransport;
+import org.ic4j.spring.EndpointRouter;
+import org.ic4j.spring.RoutingReplicaTransport;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class EndpointRouterTest {
+	static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor();
+
+	static final Predicate<Throwable> RETRY_IO = error -> {
+		for (Throwable cause = error; cause != null; cause = cause.getCause())
+			if (cause instanceof IOException)
+				return true;
+
+		return false;
+	};
+
+	@AfterAll
+	public static void shutdown() {
+		SCHEDULER.shutdownNow();
+	}
+
+	@Test
+	public void testRank() throws Exception {
+		StubEndpoint slow = new StubEndpoint("slow", 30);
+		StubEndpoint fast = new StubEndpoint("fast", 1);
+		StubEndpoint medium = new StubEndpoint("medium", 15);
+
+		EndpointRouter<StubEndpoint> router = router(slow, fast, medium);
+
+		// unmeasured endpoints are tried first, in order
+		for (int i = 0; i < 3; i++)
+			router.route(StubEndpoint::request).get(1, TimeUnit.SECONDS);
+
+		Assertions.assertEquals(1, slow.calls.get());
+		Assertions.assertEquals(1, fast.calls.get());
+		Assertions.assertEquals(1, medium.calls.get());
+
+		Assertions.assertEquals(Arrays.asList(fast, medium, slow), targets(router.rank()));
+
+		fast.failure = new IOException("connection reset");
+
+		for (int i = 0; i < EndpointRouter.FAILURE_THRESHOLD; i++)
+			Assertions.assertEquals("medium", router.route(StubEndpoint::request).get(1, TimeUnit.SECONDS));
+
+		// unhealthy endpoints go last whatever their latency
+		Assertions.assertEquals(Arrays.asList(medium, slow, fast), targets(router.rank()));
+	}
+
+	@Test
+	public void testRetryOnlyRetryableFailures() throws Exception {
+		StubEndpoint first = new StubEndpoint("first", 0);
+		StubEndpoint second = new StubEndpoint("second", 0);
+
+		EndpointRouter<StubEndpoint> router = router(first, second);
+
+		first.failure = new IOException("connection refused");
+
+		Assertions.assertEquals("second", router.route(StubEndpoint::request).get(1, TimeUnit.SECONDS));
+		Assertions.assertEquals(1, router.getEndpoints().get(0).getFailures());
+
+		// first is still unmeasured so it is tried first, a reject is final
+		first.failure = new IllegalArgumentException("400 Bad Request");
+
+		CompletableFuture<String> rejected = router.route(StubEndpoint::request);
+
+		ExecutionException error = Assertions.assertThrows(ExecutionException.class,
+				() -> rejected.get(1, TimeUnit.SECONDS));
+
+		Assertions.assertTrue(error.getCause() instanceof IllegalArgumentException);
+		Assertions.assertEquals(2, first.calls.get());
+		Assertions.assertEquals(1, second.calls.get(), "non retryable failures must not be retried");
+		Assertions.assertEquals(1, router.getEndpoints().get(0).getFailures());
+	}
+
+	@Test
+	public void testHealthTransitions() throws Exception {
+		StubEndpoint flaky = new StubEndpoint("flaky", 0);
+		StubEndpoint other = new StubEndpoint("other", 0);
+
+		EndpointRouter<StubEndpoint> router = router(flaky, other);
+		EndpointRouter.Endpoint<StubEndpoint> endpoint = router.getEndpoints().get(0);
+
+		flaky.failure = new IllegalStateException("rejected");
+
+		for (int i = 0; i < EndpointRouter.FAILURE_THRESHOLD; i++)
+			router.route(StubEndpoint::request).handle((value, ex) -> value).get(1, TimeUnit.SECONDS);
+
+		Assertions.assertTrue(endpoint.isHealthy(), "rejects don't count against the endpoint");
+
+		flaky.failure = new IOException("timeout");
+
+		for (int i = 0; i < EndpointRouter.FAILURE_THRESHOLD; i++)
+			Assertions.assertEquals("other", router.route(StubEndpoint::request).get(1, TimeUnit.SECONDS));
+
+		Assertions.assertFalse(endpoint.isHealthy());
+
+		flaky.failure = null;
+
+		router.startHealthCheck(10, StubEndpoint::request);
+
+		try {
+			long deadline = System.currentTimeMillis() + 2000;
+
+			while (!endpoint.isHealthy() && System.currentTimeMillis() < deadline)
+				Thread.sleep(10);
+		} finally {
+			router.stopHealthCheck();
+		}
+
+		Assertions.assertTrue(endpoint.isHealthy(), "a successful probe brings the endpoint back");
+	}
+
+	@Test
+	public void testHedge() throws Exception {
+		StubEndpoint stalled = new StubEndpoint("stalled", 5000);
+		StubEndpoint backup = new StubEndpoint("backup", 0);
+
+		EndpointRouter<StubEndpoint> router = router(stalled, backup);
+
+		long start = System.nanoTime();
+
+		Assertions.assertEquals("backup", router.hedge(StubEndpoint::request).get(2, TimeUnit.SECONDS));
+
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		Assertions.assertTrue(elapsed >= EndpointRouter.DEFAULT_HEDGE_DELAY, "hedge sent after " + elapsed + " ms");
+		Assertions.assertEquals(1, router.getHedgedRequests());
+
+		// a non retryable failure is final, no hedge
+		StubEndpoint rejecting = new StubEndpoint("rejecting", 0);
+		StubEndpoint spare = new StubEndpoint("spare", 0);
+
+		rejecting.failure = new IllegalStateException("rejected");
+
+		EndpointRouter<StubEndpoint> rejectingRouter = router(rejecting, spare);
+
+		Assertions.assertThrows(ExecutionException.class,
+				() -> rejectingRouter.hedge(StubEndpoint::request).get(1, TimeUnit.SECONDS));
+		Assertions.assertEquals(0, rejectingRouter.getHedgedRequests());
+		Assertions.assertEquals(0, spare.calls.get());
+	}
+
+	@Test
+	public void testHedgeDelaySamplesEveryReply() throws Exception {
+		StubEndpoint slow = new StubEndpoint("slow", 300);
+		StubEndpoint fast = new StubEndpoint("fast", 0);
+
+		EndpointRouter<StubEndpoint> router = router(slow, fast);
+
+		List<CompletableFuture<String>> responses = new ArrayList<CompletableFuture<String>>();
+
+		for (int i = 0; i < 10; i++)
+			responses.add(router.hedge(StubEndpoint::request));
+
+		for (CompletableFuture<String> response : responses)
+			Assertions.assertEquals("fast", response.get(2, TimeUnit.SECONDS));
+
+		// the slow replies arrive after the hedges won and still count
+		long deadline = System.currentTimeMillis() + 2000;
+
+		while (router.hedgeDelay() < 300 && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+
+		Assertions.assertTrue(router.hedgeDelay() >= 300, "hedge delay " + router.hedgeDelay() + " ms");
+	}
+
+	@Test
+	public void testPercentile() {
+		EndpointRouter.LatencyHistogram histogram = new EndpointRouter.LatencyHistogram(100);
+
+		for (long i = 1; i < 20; i++)
+			histogram.record(i);
+
+		Assertions.assertEquals(-1, histogram.percentile(0.95), "too few samples");
+
+		for (long i = 20; i <= 100; i++)
+			histogram.record(i);
+
+		Assertions.assertEquals(95, histogram.percentile(0.95));
+		Assertions.assertEquals(50, histogram.percentile(0.5));
+		Assertions.assertEquals(100, histogram.percentile(1));
+
+		EndpointRouter.LatencyHistogram window = new EndpointRouter.LatencyHistogram(20);
+
+		for (long i = 1; i <= 40; i++)
+			window.record(i);
+
+		// only the last 20 samples are kept
+		Assertions.assertEquals(21, window.percentile(0));
+		Assertions.assertEquals(30, window.percentile(0.5));
+	}
+
+	@Test
+	public void testRoutingReplicaTransport() throws Exception {
+		AtomicInteger failingCalls = new AtomicInteger();
+		AtomicInteger workingCalls = new AtomicInteger();
+
+		RoutingReplicaTransport routing = new RoutingReplicaTransport(Arrays.asList("http://a", "http://b"),
+				Arrays.asList(stubTransport(failingCalls, new TimeoutException()), stubTransport(workingCalls, null)),
+				false);
+
+		routing.status().get(1, TimeUnit.SECONDS);
+
+		Assertions.assertEquals(1, failingCalls.get());
+		Assertions.assertEquals(1, workingCalls.get());
+		Assertions.assertEquals(1, routing.getRouter().getEndpoints().get(0).getFailures());
+	}
+
+	static ReplicaTransport stubTransport(AtomicInteger calls, Throwable failure) {
+		return (ReplicaTransport) Proxy.newProxyInstance(ReplicaTransport.class.getClassLoader(),
+				new Class<?>[] { ReplicaTransport.class }, (proxy, method, args) -> {
+					calls.incrementAndGet();
+
+					CompletableFuture<Object> response = new CompletableFuture<Object>();
+
+					if (failure == null)
+						response.complete(null);
+					else
+						response.completeExceptionally(failure);
+
+					return response;
+				});
+	}
+
+	static EndpointRouter<StubEndpoint> router(StubEndpoint... endpoints) {
+		List<String> urls = new ArrayList<String>();
+
+		for (StubEndpoint endpoint : endpoints)
+			urls.add("http://" + endpoint.name);
+
+		return new EndpointRouter<StubEndpoint>(urls, Arrays.asList(endpoints), RETRY_IO);
+	}
+
+	static List<StubEndpoint> targets(List<EndpointRouter.Endpoint<StubEndpoint>> endpoints) {
+		List<StubEndpoint> targets = new ArrayList<StubEndpoint>();
+
+		for (EndpointRouter.Endpoint<StubEndpoint> endpoint : endpoints)
+			targets.add(endpoint.getTarget());
+
+		return targets;
+	}
+
+	static final class StubEndpoint {
+		final String name;
+
+		final long delay;
+
+		final AtomicInteger calls = new AtomicInteger();
+
+		volatile Throwable failure;
+
+		StubEndpoint(String name, long delay) {
+			this.name = name;
+			this.delay = delay;
+		}
+
+		CompletableFuture<String> request() {
+			this.calls.incrementAndGet();
+
+			CompletableFuture<String> response = new CompletableFuture<String>();
+			Throwable failure = this.failure;
+
+			Runnable reply = () -> {
+				if (failure == null)
+					response.complete(this.name);
+				else
+					response.completeExceptionally(failure);
+			};
+
+			if (this.delay > 0)
+				SCHEDULER.schedule(reply, this.delay, TimeUnit.MILLISECONDS);
+			else
+				reply.run();
+
+			return response;
+		}
+
+		@Override
+		public String toString() {
+			return this.name;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package org.ic4j.spring.test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.ic4j.agent.AgentError;
+import org.ic4j.spring.MicrometerCallMetrics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class MicrometerCallMetricsTest {
+	static final String CANISTER = "rrkah-fqaaa-aaaaa-aaaaq-cai";
+
+	@Test
+	public void testErrorCode() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		MicrometerCallMetrics callMetrics = new MicrometerCallMetrics(registry);
+
+		AgentError rejected = AgentError.create(AgentError.AgentErrorCode.REPLICA_ERROR,
+				"reject code 4, reject message canister rejected the message");
+
+		callMetrics.record(CANISTER, "greet", false, 1000, 10, -1, new CompletionException(rejected));
+		callMetrics.record(CANISTER, "greet", false, 1000, 10, -1,
+				AgentError.create(AgentError.AgentErrorCode.TIMEOUT_WAITING_FOR_RESPONSE));
+		callMetrics.record(CANISTER, "greet", false, 1000, 10, -1, new IllegalStateException());
+
+		Assertions.assertEquals(1, registry.get("ic4j.call.errors").tag("code", "4").counter().count());
+		Assertions.assertEquals(1,
+				registry.get("ic4j.call.errors").tag("code", "TIMEOUT_WAITING_FOR_RESPONSE").counter().count());
+		Assertions.assertEquals(1,
+				registry.get("ic4j.call.errors").tag("code", "IllegalStateException").counter().count());
+	}
+
+	@Test
+	public void testMetersReused() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		MicrometerCallMetrics callMetrics = new MicrometerCallMetrics(registry);
+
+		callMetrics.record(CANISTER, "greet", true, 1000, 10, 20, null);
+
+		int meters = registry.getMeters().size();
+
+		callMetrics.record(CANISTER, "greet", true, 2000, 10, 20, null);
+
+		Assertions.assertEquals(meters, registry.getMeters().size());
+		Assertions.assertEquals(2, registry.get("ic4j.call").tag("outcome", "success").timer().count());
+
+		callMetrics.record(CANISTER, "greet", true, 1000, 10, -1, new IllegalStateException());
+
+		Assertions.assertEquals(1, registry.get("ic4j.call").tag("outcome", "error").timer().count());
+		Assertions.assertEquals(3, registry.get("ic4j.call.request.bytes").summary().count());
+	}
+
+	@Test
+	public void testBindPool() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		MicrometerCallMetrics callMetrics = new MicrometerCallMetrics(registry);
+
+		long[] counts = { 3, 1 };
+
+		callMetrics.bindPool("challenge", counts, state -> state[0], state -> state[1]);
+
+		Assertions.assertEquals(3, registry.get("ic4j.pool.hits").tag("pool", "challenge").functionCounter().count());
+		Assertions.assertEquals(1, registry.get("ic4j.pool.misses").tag("pool", "challenge").functionCounter().count());
+		Assertions.assertEquals(0.75, registry.get("ic4j.pool.hit.ratio").tag("pool", "challenge").gauge().value());
+
+		counts[1] = 3;
+
+		Assertions.assertEquals(0.5, registry.get("ic4j.pool.hit.ratio").tag("pool", "challenge").gauge().value());
+	}
+
+	@Test
+	public void testObserve() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		MicrometerCallMetrics callMetrics = new MicrometerCallMetrics(registry);
+
+		CompletableFuture<byte[]> response = new CompletableFuture<byte[]>();
+
+		CompletableFuture<byte[]> observed = callMetrics.observe(CANISTER, "greet", true, 12, response);
+
+		Assertions.assertEquals(1, registry.get("ic4j.call.inflight").gauge().value());
+
+		response.complete(new byte[20]);
+		observed.get();
+
+		Assertions.assertEquals(0, registry.get("ic4j.call.inflight").gauge().value());
+		Assertions.assertEquals(12, registry.get("ic4j.call.request.bytes").summary().totalAmount());
+		Assertions.assertEquals(20, registry.get("ic4j.call.response.bytes").summary().totalAmount());
+		Assertions.assertEquals(1, registry.get("ic4j.call").tag("outcome", "success").timer().count());
+	}
+}
@@ -0,0 +1,39 @@
+package org.ic4j.spring.test;
+
+import org.ic4j.spring.PollingStrategy;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PollingStrategyTest {
+
+	@Test
+	public void testExponential() {
+		PollingStrategy pollingStrategy = PollingStrategy.exponential(100, 2, 1000, 60000);
+
+		Assertions.assertEquals(100, pollingStrategy.delay(0));
+		Assertions.assertEquals(200, pollingStrategy.delay(1));
+		Assertions.assertEquals(400, pollingStrategy.delay(2));
+		Assertions.assertEquals(800, pollingStrategy.delay(3));
+
+		// capped at the maximum delay, also once the growth overflows
+		Assertions.assertEquals(1000, pollingStrategy.delay(4));
+		Assertions.assertEquals(1000, pollingStrategy.delay(10000));
+	}
+
+	@Test
+	public void testFixed() {
+		PollingStrategy pollingStrategy = PollingStrategy.fixed(50, 1000);
+
+		Assertions.assertEquals(50, pollingStrategy.delay(0));
+		Assertions.assertEquals(50, pollingStrategy.delay(7));
+		Assertions.assertEquals(1000, pollingStrategy.getTimeout());
+	}
+
+	@Test
+	public void testValidation() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> PollingStrategy.exponential(-1, 2, 1000, 1000));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> PollingStrategy.exponential(100, 0.5, 1000, 1000));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> PollingStrategy.exponential(100, 2, 50, 1000));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> PollingStrategy.fixed(100, 0));
+	}
+}
@@ -0,0 +1,129 @@
+package org.ic4j.spring.test;
+
+import org.ic4j.spring.CallKey;
+import org.ic4j.spring.QueryResultCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class QueryResultCacheTest {
+	static final String METHOD = "greet";
+
+	@Test
+	public void testTtl() throws Exception {
+		QueryResultCache queryCache = new QueryResultCache();
+		queryCache.configure(METHOD, 100, 10);
+
+		CallKey key = key(1);
+
+		queryCache.put(key, "hello", queryCache.generation());
+
+		Assertions.assertEquals("hello", queryCache.get(key));
+
+		Thread.sleep(150);
+
+		Assertions.assertSame(QueryResultCache.NOT_FOUND, queryCache.get(key));
+		Assertions.assertEquals(1, queryCache.getHits());
+		Assertions.assertEquals(1, queryCache.getMisses());
+	}
+
+	@Test
+	public void testLru() {
+		QueryResultCache queryCache = new QueryResultCache();
+		queryCache.configure(METHOD, 60000, 2);
+
+		long generation = queryCache.generation();
+
+		queryCache.put(key(1), "one", generation);
+		queryCache.put(key(2), "two", generation);
+
+		// touch the first entry so the second one is the eldest
+		Assertions.assertEquals("one", queryCache.get(key(1)));
+
+		queryCache.put(key(3), "three", generation);
+
+		Assertions.assertEquals("one", queryCache.get(key(1)));
+		Assertions.assertSame(QueryResultCache.NOT_FOUND, queryCache.get(key(2)));
+		Assertions.assertEquals("three", queryCache.get(key(3)));
+	}
+
+	@Test
+	public void testArrayResultsCopied() {
+		QueryResultCache queryCache = new QueryResultCache();
+		queryCache.configure(METHOD, 60000, 10);
+
+		String[] greetings = { "hello", "hi" };
+		int[] counts = { 1, 2 };
+
+		queryCache.put(key(1), greetings, queryCache.generation());
+		queryCache.put(key(2), counts, queryCache.generation());
+
+		// the caller that stored the result still owns its array
+		greetings[0] = "changed";
+
+		String[] first = (String[]) queryCache.get(key(1));
+		first[1] = "changed";
+
+		String[] second = (String[]) queryCache.get(key(1));
+
+		Assertions.assertNotSame(first, second);
+		Assertions.assertArrayEquals(new String[] { "hello", "hi" }, second);
+
+		((int[]) queryCache.get(key(2)))[0] = 3;
+
+		Assertions.assertArrayEquals(new int[] { 1, 2 }, (int[]) queryCache.get(key(2)));
+	}
+
+	@Test
+	public void testUncachedMethod() {
+		QueryResultCache queryCache = new QueryResultCache();
+
+		Assertions.assertTrue(queryCache.isEmpty());
+
+		queryCache.configure(METHOD, 0, 10);
+		queryCache.put(key(1), "hello", queryCache.generation());
+
+		Assertions.assertFalse(queryCache.isCached(METHOD));
+		Assertions.assertSame(QueryResultCache.NOT_FOUND, queryCache.get(key(1)));
+	}
+
+	@Test
+	public void testInvalidateAll() {
+		QueryResultCache queryCache = new QueryResultCache();
+		queryCache.configure(METHOD, 60000, 10);
+		queryCache.configure("other", 60000, 10);
+
+		CallKey otherKey = new CallKey("other", new byte[] { 1 });
+
+		queryCache.put(key(1), "one", queryCache.generation());
+		queryCache.put(otherKey, "other", queryCache.generation());
+
+		queryCache.invalidateAll();
+
+		Assertions.assertSame(QueryResultCache.NOT_FOUND, queryCache.get(key(1)));
+		Assertions.assertSame(QueryResultCache.NOT_FOUND, queryCache.get(otherKey));
+		Assertions.assertTrue(queryCache.isCached(METHOD));
+	}
+
+	@Test
+	public void testStaleResultAfterInvalidate() {
+		QueryResultCache queryCache = new QueryResultCache();
+		queryCache.configure(METHOD, 60000, 10);
+
+		// a query is sent, then an update invalidates the cache before the reply
+		long generation = queryCache.generation();
+
+		queryCache.invalidateAll();
+
+		queryCache.put(key(1), "stale", generation);
+
+		Assertions.assertSame(QueryResultCache.NOT_FOUND, queryCache.get(key(1)));
+
+		queryCache.put(key(1), "fresh", queryCache.generation());
+
+		Assertions.assertEquals("fresh", queryCache.get(key(1)));
+	}
+
+	static CallKey key(int arg) {
+		return new CallKey(METHOD, new byte[] { (byte) arg });
+	}
+}
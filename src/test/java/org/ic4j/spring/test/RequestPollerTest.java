@@ -0,0 +1,87 @@
+package org.ic4j.spring.test;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ic4j.spring.PollingStrategy;
+import org.ic4j.spring.RequestPoller;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class RequestPollerTest {
+
+	@Test
+	public void testReply() throws Exception {
+		AtomicInteger polls = new AtomicInteger();
+
+		CompletableFuture<String> response = RequestPoller.poll(() -> CompletableFuture
+				.completedFuture(polls.incrementAndGet() < 3 ? Optional.<String>empty() : Optional.of("replied")),
+				PollingStrategy.fixed(10, 5000), TimeoutException::new);
+
+		Assertions.assertEquals("replied", response.get(1, TimeUnit.SECONDS));
+		Assertions.assertEquals(3, polls.get());
+	}
+
+	@Test
+	public void testDeadline() throws Exception {
+		AtomicInteger polls = new AtomicInteger();
+
+		TestClock clock = new TestClock(0);
+
+		// each poll takes 50 ms of the 200 ms timeout
+		CompletableFuture<String> response = RequestPoller.poll(() -> {
+			polls.incrementAndGet();
+			clock.advance(50);
+
+			return CompletableFuture.completedFuture(Optional.<String>empty());
+		}, PollingStrategy.fixed(1, 200), TimeoutException::new, clock);
+
+		ExecutionException error = Assertions.assertThrows(ExecutionException.class,
+				() -> response.get(5, TimeUnit.SECONDS));
+
+		Assertions.assertTrue(error.getCause() instanceof TimeoutException);
+
+		// no poll is started past the deadline
+		Assertions.assertEquals(4, polls.get());
+		Assertions.assertEquals(200, clock.millis());
+	}
+
+	@Test
+	public void testDeadlineBeforeFirstPoll() {
+		AtomicInteger polls = new AtomicInteger();
+
+		CompletableFuture<String> response = RequestPoller.poll(() -> {
+			polls.incrementAndGet();
+
+			return CompletableFuture.completedFuture(Optional.of("replied"));
+		}, PollingStrategy.exponential(500, 2, 500, 100), TimeoutException::new);
+
+		// the first delay already ends after the timeout
+		Assertions.assertTrue(response.isCompletedExceptionally());
+		Assertions.assertEquals(0, polls.get());
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		AtomicInteger polls = new AtomicInteger();
+
+		CompletableFuture<String> response = RequestPoller.poll(() -> {
+			polls.incrementAndGet();
+
+			CompletableFuture<Optional<String>> status = new CompletableFuture<Optional<String>>();
+			status.completeExceptionally(new IllegalStateException("rejected"));
+
+			return status;
+		}, PollingStrategy.fixed(10, 5000), TimeoutException::new);
+
+		ExecutionException error = Assertions.assertThrows(ExecutionException.class,
+				() -> response.get(1, TimeUnit.SECONDS));
+
+		Assertions.assertTrue(error.getCause() instanceof IllegalStateException);
+		Assertions.assertEquals(1, polls.get());
+	}
+}
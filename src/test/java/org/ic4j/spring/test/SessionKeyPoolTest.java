@@ -0,0 +1,146 @@
+package org.ic4j.spring.test;
+
+import java.security.KeyPair;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.ic4j.internetidentity.Algorithm;
+import org.ic4j.spring.SessionKeyPool;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SessionKeyPoolTest {
+	static final Algorithm ALGORITHM = Algorithm.values()[0];
+
+	@Test
+	public void testPrefillAndRefill() throws Exception {
+		AtomicInteger generated = new AtomicInteger();
+
+		SessionKeyPool pool = new SessionKeyPool(4, 1, algorithm -> {
+			generated.incrementAndGet();
+
+			return new KeyPair(null, null);
+		}, ALGORITHM);
+
+		try {
+			// filled at construction, before the first take
+			await(() -> pool.size(ALGORITHM) == 4);
+
+			for (int i = 0; i < 2; i++)
+				pool.take(ALGORITHM);
+
+			Assertions.assertEquals(2, pool.size(ALGORITHM));
+			Assertions.assertEquals(4, generated.get(), "no refill above the low-water mark");
+
+			pool.take(ALGORITHM);
+
+			await(() -> pool.size(ALGORITHM) == 4);
+
+			Assertions.assertEquals(7, generated.get());
+			Assertions.assertEquals(3, pool.getHits());
+			Assertions.assertEquals(0, pool.getMisses());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testExhaustion() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger inline = new AtomicInteger();
+
+		// the refill worker stays blocked, so the pool remains empty
+		SessionKeyPool pool = new SessionKeyPool(4, 1, algorithm -> {
+			if (Thread.currentThread().getName().equals("ic4j-session-key-pool")) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			} else
+				inline.incrementAndGet();
+
+			return new KeyPair(null, null);
+		}, ALGORITHM);
+
+		try {
+			Assertions.assertNotNull(pool.take(ALGORITHM));
+			Assertions.assertNotNull(pool.take(ALGORITHM));
+
+			Assertions.assertEquals(2, inline.get(), "an empty pool generates inline");
+			Assertions.assertEquals(0, pool.getHits());
+			Assertions.assertEquals(2, pool.getMisses());
+			Assertions.assertEquals(0.0, pool.getHitRate());
+		} finally {
+			release.countDown();
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testHitRate() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger pooled = new AtomicInteger();
+
+		// the worker generates the initial two key pairs, the refill then blocks
+		SessionKeyPool pool = new SessionKeyPool(2, 0, algorithm -> {
+			if (Thread.currentThread().getName().equals("ic4j-session-key-pool") && pooled.incrementAndGet() > 2) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			return new KeyPair(null, null);
+		}, ALGORITHM);
+
+		try {
+			Assertions.assertEquals(0.0, pool.getHitRate());
+
+			await(() -> pool.size(ALGORITHM) == 2);
+
+			pool.take(ALGORITHM);
+			pool.take(ALGORITHM);
+			pool.take(ALGORITHM);
+
+			Assertions.assertEquals(2, pool.getHits());
+			Assertions.assertEquals(1, pool.getMisses());
+			Assertions.assertEquals(2.0 / 3, pool.getHitRate(), 0.0001);
+		} finally {
+			release.countDown();
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testShutdown() throws Exception {
+		AtomicInteger generated = new AtomicInteger();
+
+		SessionKeyPool pool = new SessionKeyPool(4, 1, algorithm -> {
+			generated.incrementAndGet();
+
+			return new KeyPair(null, null);
+		});
+
+		pool.shutdown();
+
+		// no refill after shutdown, callers still get key pairs
+		pool.prefill(ALGORITHM);
+
+		Assertions.assertNotNull(pool.take(ALGORITHM));
+		Assertions.assertEquals(0, pool.size(ALGORITHM));
+		Assertions.assertEquals(1, generated.get());
+	}
+
+	static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+
+		while (!condition.getAsBoolean()) {
+			Assertions.assertTrue(System.currentTimeMillis() < deadline, "condition not reached");
+
+			Thread.sleep(5);
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package org.ic4j.spring.test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ic4j.spring.CallKey;
+import org.ic4j.spring.SingleFlight;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SingleFlightTest {
+	static final CallKey KEY = new CallKey("greet", new byte[] { 1, 2, 3 });
+
+	@Test
+	public void testCall() throws Exception {
+		SingleFlight singleFlight = new SingleFlight();
+
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try {
+			Future<String> first = executor.submit(() -> singleFlight.call(KEY, () -> {
+				calls.incrementAndGet();
+				started.countDown();
+				release.await();
+				return "hello";
+			}));
+
+			started.await(1, TimeUnit.SECONDS);
+
+			// an equal key built from another array joins the call in flight
+			Future<String> second = executor
+					.submit(() -> singleFlight.call(new CallKey("greet", new byte[] { 1, 2, 3 }), () -> {
+						calls.incrementAndGet();
+						return "other";
+					}));
+
+			long deadline = System.currentTimeMillis() + 1000;
+
+			while (singleFlight.getShared() == 0 && System.currentTimeMillis() < deadline)
+				Thread.sleep(5);
+
+			release.countDown();
+
+			Assertions.assertEquals("hello", first.get(1, TimeUnit.SECONDS));
+			Assertions.assertEquals("hello", second.get(1, TimeUnit.SECONDS));
+			Assertions.assertEquals(1, calls.get());
+			Assertions.assertEquals(1, singleFlight.getShared());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// nothing is retained once the call completes
+		Assertions.assertEquals("again", singleFlight.call(KEY, () -> "again"));
+	}
+
+	@Test
+	public void testCallFailure() throws Exception {
+		SingleFlight singleFlight = new SingleFlight();
+
+		Assertions.assertThrows(IllegalStateException.class, () -> singleFlight.call(KEY, () -> {
+			throw new IllegalStateException("rejected");
+		}));
+
+		Assertions.assertEquals("hello", singleFlight.call(KEY, () -> "hello"));
+	}
+
+	@Test
+	public void testCallAsync() throws Exception {
+		SingleFlight singleFlight = new SingleFlight();
+
+		AtomicInteger calls = new AtomicInteger();
+		CompletableFuture<String> response = new CompletableFuture<String>();
+
+		CompletableFuture<String> first = singleFlight.callAsync(KEY, () -> {
+			calls.incrementAndGet();
+			return response;
+		});
+
+		CompletableFuture<String> second = singleFlight.callAsync(KEY, () -> {
+			calls.incrementAndGet();
+			return CompletableFuture.completedFuture("other");
+		});
+
+		Assertions.assertFalse(first.isDone());
+
+		response.complete("hello");
+
+		Assertions.assertEquals("hello", first.get(1, TimeUnit.SECONDS));
+		Assertions.assertEquals("hello", second.get(1, TimeUnit.SECONDS));
+		Assertions.assertEquals(1, calls.get());
+		Assertions.assertEquals(1, singleFlight.getShared());
+
+		Assertions.assertEquals("again",
+				singleFlight.callAsync(KEY, () -> CompletableFuture.completedFuture("again")).get(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testArrayResultsCopied() throws Exception {
+		SingleFlight singleFlight = new SingleFlight();
+
+		CompletableFuture<String[]> response = new CompletableFuture<String[]>();
+
+		CompletableFuture<String[]> first = singleFlight.callAsync(KEY, () -> response);
+		CompletableFuture<String[]> second = singleFlight.callAsync(KEY, () -> response);
+
+		response.complete(new String[] { "hello", "hi" });
+
+		String[] firstValue = first.get(1, TimeUnit.SECONDS);
+		firstValue[0] = "changed";
+
+		Assertions.assertNotSame(firstValue, second.get(1, TimeUnit.SECONDS));
+		Assertions.assertArrayEquals(new String[] { "hello", "hi" }, second.get(1, TimeUnit.SECONDS));
+
+		// the caller executing a blocking call gets its own result back
+		String[] greetings = { "hello" };
+
+		Assertions.assertSame(greetings, singleFlight.call(KEY, () -> greetings));
+	}
+
+	@Test
+	public void testCallAsyncFailure() throws Exception {
+		SingleFlight singleFlight = new SingleFlight();
+
+		CompletableFuture<String> response = new CompletableFuture<String>();
+
+		CompletableFuture<String> first = singleFlight.callAsync(KEY, () -> response);
+		CompletableFuture<String> second = singleFlight.callAsync(KEY, () -> CompletableFuture.completedFuture("other"));
+
+		response.completeExceptionally(new IllegalStateException("rejected"));
+
+		ExecutionException error = Assertions.assertThrows(ExecutionException.class,
+				() -> second.get(1, TimeUnit.SECONDS));
+
+		Assertions.assertTrue(error.getCause() instanceof IllegalStateException);
+		Assertions.assertTrue(first.isCompletedExceptionally());
+
+		// a supplier throwing before it returns a future fails the call too
+		CompletableFuture<String> thrown = singleFlight.callAsync(KEY, () -> {
+			throw new IllegalArgumentException("bad argument");
+		});
+
+		Assertions.assertTrue(thrown.isCompletedExceptionally());
+		Assertions.assertEquals("hello",
+				singleFlight.callAsync(KEY, () -> CompletableFuture.completedFuture("hello")).get(1, TimeUnit.SECONDS));
+	}
+}
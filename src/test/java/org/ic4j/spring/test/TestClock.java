@@ -0,0 +1,41 @@
+package org.ic4j.spring.test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/*
+ * Clock that only moves when the test advances it
+ */
+final class TestClock extends Clock {
+	volatile long millis;
+
+	TestClock(long millis) {
+		this.millis = millis;
+	}
+
+	void advance(long millis) {
+		this.millis += millis;
+	}
+
+	@Override
+	public long millis() {
+		return this.millis;
+	}
+
+	@Override
+	public Instant instant() {
+		return Instant.ofEpochMilli(this.millis);
+	}
+
+	@Override
+	public ZoneId getZone() {
+		return ZoneOffset.UTC;
+	}
+
+	@Override
+	public Clock withZone(ZoneId zone) {
+		return this;
+	}
+}
@@ -1,12 +1,15 @@
 package org.ic4j.spring.test;
 
+import org.ic4j.spring.AgentRegistry;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.scheduling.annotation.EnableAsync;
 
 @Configuration
 @EnableAsync
 @ComponentScan(basePackages = "org.ic4j.spring.test") // Adjust the package if necessary
+@Import(AgentRegistry.class)
 public class TestConfig {
 
 }